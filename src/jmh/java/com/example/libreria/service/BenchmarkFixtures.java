@@ -0,0 +1,58 @@
+package com.example.libreria.service;
+
+import com.example.libreria.model.Author;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Money;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.model.User;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Entidades de ejemplo con datos parecidos a los de la API externa
+final class BenchmarkFixtures {
+    
+    private BenchmarkFixtures() {
+    }
+    
+    static Book book(long externalId) {
+        Book book = new Book();
+        book.setExternalId(externalId);
+        book.setTitle("One Hundred Years of Solitude " + externalId);
+        book.setAuthors(List.of(new Author(1L, "Gabriel García Márquez")));
+        book.setFirstPublishYear(1967);
+        book.setEditionCount(250);
+        book.setHasFulltext(true);
+        book.setPrice(Money.of("22.99"));
+        book.setStockQuantity(10);
+        book.setAvailableQuantity(7);
+        return book;
+    }
+    
+    static User user(long id) {
+        User user = new User();
+        user.setId(id);
+        user.setName("Lector " + id);
+        user.setEmail("lector-" + id + "@example.com");
+        user.setPhoneNumber("123456789");
+        user.setCreatedAt(LocalDateTime.of(2026, 1, 15, 10, 30));
+        return user;
+    }
+    
+    static Reservation reservation(long id) {
+        Reservation reservation = new Reservation();
+        reservation.setId(id);
+        reservation.setUser(user(id % 100));
+        reservation.setBook(book(id % 500));
+        reservation.setRentalDays(7);
+        reservation.setStartDate(LocalDate.of(2026, 3, 1));
+        reservation.setExpectedReturnDate(LocalDate.of(2026, 3, 8));
+        reservation.setDailyRate(Money.of("22.99"));
+        reservation.setTotalFee(Money.of("160.93"));
+        reservation.setLateFee(Money.ZERO);
+        reservation.setStatus(Reservation.ReservationStatus.ACTIVE);
+        reservation.setCreatedAt(LocalDateTime.of(2026, 3, 1, 9, 0));
+        return reservation;
+    }
+}
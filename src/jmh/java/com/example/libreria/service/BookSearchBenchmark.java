@@ -0,0 +1,77 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.BookResponseDTO;
+import com.example.libreria.model.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BookSearchBenchmark {
+
+    // Palabras muy frecuentes en títulos; el resto del vocabulario se arma con sílabas
+    private static final String[] COMMON = {"el", "la", "de", "los", "las", "del", "historia", "amor", "noche", "casa"};
+    private static final String[] SYLLABLES = {
+            "ma", "ri", "to", "la", "sen", "dor", "qui", "bel", "ca", "mi", "nos", "tre", "vi", "lu", "pe",
+            "ro", "sa", "gan", "te", "cu", "ñe", "dra", "fa", "jo", "zar", "les", "bri", "ción", "mo", "nú"
+    };
+    private static final String[] NAMES = {
+            "Gabriel", "Julio", "Isabel", "Jorge", "Mario", "Juan", "Laura", "Elena", "Ernesto", "Adolfo"
+    };
+    private static final String[] SURNAMES = {
+            "García", "Márquez", "Cortázar", "Allende", "Borges", "Vargas", "Llosa", "Rulfo", "Esquivel",
+            "Sábato", "Bioy", "Casares", "Garro", "Poniatowska", "Benedetti", "Onetti", "Puig", "Arlt"
+    };
+
+    @Param({"1000000"})
+    private int catalogSize;
+
+    // Palabra poco frecuente, palabra y autor por prefijo, palabra frecuente con otra poco
+    // frecuente, y el peor caso: un prefijo de dos letras que coincide con buena parte del catálogo
+    @Param({"marito", "lusen garc", "historia bel", "ma"})
+    private String query;
+
+    private BookSearchService bookSearchService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        List<BookResponseDTO> catalog = new ArrayList<>(catalogSize);
+        for (int i = 0; i < catalogSize; i++) {
+            String title = COMMON[random.nextInt(COMMON.length)] + " " + word(random) + " " + word(random);
+            String author = NAMES[random.nextInt(NAMES.length)] + " " + SURNAMES[random.nextInt(SURNAMES.length)]
+                    + " " + word(random);
+            catalog.add(new BookResponseDTO((long) i, title, List.of(author), 1967, 1, false, Money.of("10.00"), 1, 1));
+        }
+        bookSearchService = new BookSearchService();
+        bookSearchService.replaceAll(catalog);
+    }
+
+    // Entre 27.000 y 810.000 palabras posibles según la cantidad de sílabas
+    private static String word(Random random) {
+        StringBuilder word = new StringBuilder();
+        int syllables = 3 + random.nextInt(2);
+        for (int i = 0; i < syllables; i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+
+    @Benchmark
+    public List<Long> search() {
+        return bookSearchService.search(query, BookService.DEFAULT_SEARCH_LIMIT);
+    }
+}
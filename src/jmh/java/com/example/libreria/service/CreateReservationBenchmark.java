@@ -0,0 +1,73 @@
+package com.example.libreria.service;
+
+import com.example.libreria.LibreriaApplication;
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.UserRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Camino completo de createReservation contra H2 en memoria: lectura de usuario y libro,
+ * descuento condicional de stock, INSERT de la reserva y conversión a DTO.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CreateReservationBenchmark {
+    
+    private ConfigurableApplicationContext context;
+    private ReservationService reservationService;
+    private ReservationRequestDTO request;
+    
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = new SpringApplicationBuilder(LibreriaApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                // Como argumentos para que tengan prioridad sobre application-test.yaml
+                .run("--spring.datasource.url=jdbc:h2:mem:jmh",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.jpa.properties.hibernate.generate_statistics=false",
+                        "--logging.level.com.example.libreria=WARN");
+        reservationService = context.getBean(ReservationService.class);
+        
+        Book book = BenchmarkFixtures.book(660001L);
+        // Stock suficiente para todas las iteraciones sin quedarse sin copias
+        book.setStockQuantity(Integer.MAX_VALUE);
+        book.setAvailableQuantity(Integer.MAX_VALUE);
+        context.getBean(BookRepository.class).save(book);
+        
+        User user = BenchmarkFixtures.user(0L);
+        user.setId(null);
+        user = context.getBean(UserRepository.class).save(user);
+        
+        request = new ReservationRequestDTO(user.getId(), book.getExternalId(), 7, LocalDate.now());
+    }
+    
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+    
+    @Benchmark
+    public ReservationResponseDTO createReservation() {
+        return reservationService.createReservation(request);
+    }
+}
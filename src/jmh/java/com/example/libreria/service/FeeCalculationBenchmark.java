@@ -0,0 +1,35 @@
+package com.example.libreria.service;
+
+import com.example.libreria.model.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FeeCalculationBenchmark {
+    
+    // Los cálculos de tarifas no usan las dependencias del servicio
+    private final ReservationService reservationService = new ReservationService(null, null, null, null, null, null);
+    
+    private long priceCents = Money.of("22.99").getCents();
+    private int rentalDays = 7;
+    private long daysLate = 3;
+    
+    // Con -prof gc ambos deberían reportar 0 B/op
+    @Benchmark
+    public long calculateTotalFee() {
+        return reservationService.calculateTotalFee(priceCents, rentalDays);
+    }
+    
+    @Benchmark
+    public long calculateLateFee() {
+        return reservationService.calculateLateFee(priceCents, daysLate);
+    }
+}
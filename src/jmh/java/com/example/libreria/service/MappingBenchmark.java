@@ -0,0 +1,45 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.BookResponseDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.dto.UserResponseDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MappingBenchmark {
+    
+    private final BookService bookService = new BookService(null, null, null, null, null, null, null, null);
+    private final UserService userService = new UserService(null, null, null, null, null);
+    private final ReservationService reservationService = new ReservationService(null, null, null, null, null, null);
+    
+    private final Book book = BenchmarkFixtures.book(258027L);
+    private final User user = BenchmarkFixtures.user(1L);
+    private final Reservation reservation = BenchmarkFixtures.reservation(1L);
+    
+    @Benchmark
+    public BookResponseDTO bookToDTO() {
+        return bookService.convertToDTO(book);
+    }
+    
+    @Benchmark
+    public UserResponseDTO userToDTO() {
+        return userService.convertToDTO(user);
+    }
+    
+    @Benchmark
+    public ReservationResponseDTO reservationToDTO() {
+        return reservationService.convertToDTO(reservation);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.BookResponseDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Serialización de listados como la hace Spring MVC (mismo ObjectMapper que arma Boot).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+    
+    @Param({"1000", "100000"})
+    private int size;
+    
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private List<BookResponseDTO> books;
+    private List<ReservationResponseDTO> reservations;
+    
+    @Setup
+    public void setUp() {
+        BookService bookService = new BookService(null, null, null, null, null, null, null, null);
+        ReservationService reservationService = new ReservationService(null, null, null, null, null, null);
+        books = LongStream.range(0, size)
+                .mapToObj(id -> bookService.convertToDTO(BenchmarkFixtures.book(id)))
+                .toList();
+        reservations = LongStream.range(0, size)
+                .mapToObj(id -> reservationService.convertToDTO(BenchmarkFixtures.reservation(id)))
+                .toList();
+    }
+    
+    @Benchmark
+    public byte[] serializeBooks() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(books);
+    }
+    
+    @Benchmark
+    public byte[] serializeReservations() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(reservations);
+    }
+}
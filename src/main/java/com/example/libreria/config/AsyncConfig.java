@@ -0,0 +1,84 @@
+package com.example.libreria.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+@Slf4j
+public class AsyncConfig {
+    
+    // Guarda un bloque de la sincronización mientras se descarga el siguiente.
+    // Un solo hilo: nunca hay más de un bloque guardándose a la vez
+    @Bean
+    public ThreadPoolTaskExecutor catalogSyncExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("catalog-sync-");
+        return executor;
+    }
+    
+    // Ejecuta los trabajos de sincronización fuera de los hilos de Tomcat.
+    // Los pedidos simultáneos se unen al trabajo en curso, así que basta un hilo
+    @Bean
+    public ThreadPoolTaskExecutor bookSyncJobExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("book-sync-job-");
+        return executor;
+    }
+    
+    // Lee en paralelo los bloques de reservas al reconstruir las estadísticas.
+    // Cada hilo ocupa una conexión del pool mientras lee su bloque
+    @Bean
+    public ThreadPoolTaskExecutor analyticsRebuildExecutor(
+            @Value("${analytics.rebuild.parallelism:4}") int parallelism) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setThreadNamePrefix("analytics-rebuild-");
+        return executor;
+    }
+    
+    // Llamadas concurrentes a fetchBookById al actualizar libros puntuales.
+    // El límite de concurrencia frena el envío de tareas al alcanzarse, sin cola intermedia.
+    // Nunca supera las conexiones por ruta del pool HTTP: con más hilos que conexiones,
+    // los sobrantes solo esperarían una conexión libre
+    @Bean
+    public SimpleAsyncTaskExecutor bookRefreshExecutor(
+            Environment environment,
+            @Value("${external.api.http.max-per-route:20}") int maxPerRoute,
+            @Value("${catalog.refresh.concurrency:${external.api.http.max-per-route:20}}") int concurrency) {
+        if (concurrency > maxPerRoute) {
+            log.warn("catalog.refresh.concurrency={} exceeds external.api.http.max-per-route={}; using {}",
+                    concurrency, maxPerRoute, maxPerRoute);
+            concurrency = maxPerRoute;
+        }
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("book-refresh-");
+        executor.setConcurrencyLimit(concurrency);
+        // Hilos virtuales solo si están habilitados y la JVM los soporta (Java 21+)
+        executor.setVirtualThreads(Threading.VIRTUAL.isActive(environment));
+        return executor;
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void warnIfVirtualThreadsUnavailable(ApplicationReadyEvent event) {
+        Environment environment = event.getApplicationContext().getEnvironment();
+        boolean requested = environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false);
+        if (requested && !Threading.VIRTUAL.isActive(environment)) {
+            log.warn("spring.threads.virtual.enabled is set but Java {} has no virtual threads; using platform threads",
+                    Runtime.version().feature());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.libreria.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.regex.Pattern;
+
+/**
+ * Mide cada llamada a la API externa de libros: duración y tamaño de la respuesta, como
+ * histogramas. El catálogo se parsea a medida que llega, así que la llamada termina recién
+ * cuando RestTemplate cierra la respuesta: la duración incluye leer todo el cuerpo y el tamaño
+ * cuenta los bytes ya descomprimidos que se leyeron.
+ */
+public class ExternalApiMetricsInterceptor implements ClientHttpRequestInterceptor {
+    
+    static final String REQUESTS = "library.external.books.requests";
+    static final String PAYLOAD = "library.external.books.payload";
+    
+    // Los IDs de la ruta se agrupan para no crear una serie por libro
+    private static final Pattern NUMERIC_SEGMENT = Pattern.compile("/\\d+(?=/|$)");
+    
+    private final MeterRegistry registry;
+    
+    public ExternalApiMetricsInterceptor(MeterRegistry registry) {
+        this.registry = registry;
+    }
+    
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        String path = NUMERIC_SEGMENT.matcher(request.getURI().getPath()).replaceAll("/{id}");
+        Timer.Sample sample = Timer.start(registry);
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+        } catch (IOException | RuntimeException e) {
+            sample.stop(timer(request, path, "IO_ERROR"));
+            throw e;
+        }
+        return new MeteredResponse(response, request, path, sample);
+    }
+    
+    private Timer timer(HttpRequest request, String path, String status) {
+        return Timer.builder(REQUESTS)
+                .description("Llamadas a la API externa de libros, hasta terminar de leer la respuesta")
+                .tag("method", request.getMethod().name())
+                .tag("path", path)
+                .tag("status", status)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+    
+    private DistributionSummary payload(HttpRequest request, String path) {
+        return DistributionSummary.builder(PAYLOAD)
+                .description("Tamaño de las respuestas de la API externa de libros")
+                .baseUnit("bytes")
+                .tag("method", request.getMethod().name())
+                .tag("path", path)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+    
+    // Cuenta los bytes leídos del cuerpo y registra las métricas al cerrarse la respuesta
+    private final class MeteredResponse implements ClientHttpResponse {
+        
+        private final ClientHttpResponse delegate;
+        private final HttpRequest request;
+        private final String path;
+        private final Timer.Sample sample;
+        private long bytesRead;
+        private boolean recorded;
+        private InputStream body;
+        
+        MeteredResponse(ClientHttpResponse delegate, HttpRequest request, String path, Timer.Sample sample) {
+            this.delegate = delegate;
+            this.request = request;
+            this.path = path;
+            this.sample = sample;
+        }
+        
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+        
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+        
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+        
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                body = new FilterInputStream(delegate.getBody()) {
+                    @Override
+                    public int read() throws IOException {
+                        int b = super.read();
+                        if (b >= 0) {
+                            bytesRead++;
+                        }
+                        return b;
+                    }
+                    
+                    @Override
+                    public int read(byte[] buffer, int offset, int length) throws IOException {
+                        int n = super.read(buffer, offset, length);
+                        if (n > 0) {
+                            bytesRead += n;
+                        }
+                        return n;
+                    }
+                };
+            }
+            return body;
+        }
+        
+        @Override
+        public void close() {
+            if (recorded) {
+                delegate.close();
+                return;
+            }
+            recorded = true;
+            String status;
+            try {
+                status = String.valueOf(delegate.getStatusCode().value());
+            } catch (IOException e) {
+                status = "IO_ERROR";
+            }
+            try {
+                delegate.close();
+            } finally {
+                sample.stop(timer(request, path, status));
+                payload(request, path).record(bytesRead);
+            }
+        }
+    }
+}
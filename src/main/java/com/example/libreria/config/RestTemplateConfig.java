@@ -1,27 +1,97 @@
 package com.example.libreria.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.http.client.ClientHttpRequestFactory;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+
 @Configuration
 public class RestTemplateConfig {
     
     @Bean
-    public RestTemplate restTemplate() {
+    @Primary
+    public RestTemplate restTemplate(ClientHttpRequestFactory clientHttpRequestFactory, MeterRegistry meterRegistry) {
+        return meteredRestTemplate(clientHttpRequestFactory, meterRegistry);
+    }
+    
+    // Pool de conexiones keep-alive: evita un handshake TCP/TLS por cada llamada a la API externa
+    @Bean
+    public PoolingHttpClientConnectionManager externalApiConnectionManager(
+            @Value("${external.api.http.max-total:50}") int maxTotal,
+            @Value("${external.api.http.max-per-route:20}") int maxPerRoute,
+            @Value("${external.api.http.connect-timeout:5000}") int connectTimeout,
+            @Value("${external.api.http.read-timeout:5000}") int readTimeout) {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxTotal)
+                .setMaxConnPerRoute(maxPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeout))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeout))
+                        // Verifica la conexión antes de reutilizarla si estuvo ociosa
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+    }
+    
+    // El cliente pide gzip/deflate y descomprime la respuesta automáticamente
+    @Bean
+    public CloseableHttpClient externalApiHttpClient(
+            PoolingHttpClientConnectionManager externalApiConnectionManager,
+            @Value("${external.api.http.idle-timeout:30s}") Duration idleTimeout) {
+        return HttpClients.custom()
+                .setConnectionManager(externalApiConnectionManager)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(idleTimeout.toMillis()))
+                .build();
+    }
+    
+    @Bean
+    public ClientHttpRequestFactory clientHttpRequestFactory(
+            CloseableHttpClient externalApiHttpClient,
+            @Value("${external.api.http.connect-timeout:5000}") int connectTimeout,
+            @Value("${external.api.http.read-timeout:5000}") int readTimeout) {
+        return requestFactory(externalApiHttpClient, connectTimeout, readTimeout);
+    }
+    
+    // Actualización de libros puntuales: mismo pool, pero la respuesta se espera solo hasta
+    // catalog.refresh.timeout. Al vencer, el cliente corta la llamada y libera la conexión
+    // del pool; la espera de una conexión libre no cuenta en ese tiempo
+    @Bean
+    public RestTemplate bookRefreshRestTemplate(
+            CloseableHttpClient externalApiHttpClient,
+            MeterRegistry meterRegistry,
+            @Value("${external.api.http.connect-timeout:5000}") int connectTimeout,
+            @Value("${catalog.refresh.timeout:3s}") Duration refreshTimeout) {
+        return meteredRestTemplate(requestFactory(externalApiHttpClient, connectTimeout, (int) refreshTimeout.toMillis()),
+                meterRegistry);
+    }
+    
+    private static RestTemplate meteredRestTemplate(ClientHttpRequestFactory requestFactory, MeterRegistry meterRegistry) {
         RestTemplate restTemplate = new RestTemplate();
-        restTemplate.setRequestFactory(clientHttpRequestFactory());
+        restTemplate.setRequestFactory(requestFactory);
+        // Duración y tamaño de cada respuesta de la API externa (/actuator/prometheus)
+        restTemplate.getInterceptors().add(new ExternalApiMetricsInterceptor(meterRegistry));
         return restTemplate;
     }
     
-    @Bean
-    public ClientHttpRequestFactory clientHttpRequestFactory() {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(5000);
-        factory.setReadTimeout(5000);
+    private static ClientHttpRequestFactory requestFactory(CloseableHttpClient httpClient, int connectTimeout, int readTimeout) {
+        HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        // Tiempo máximo esperando una conexión libre del pool
+        factory.setConnectionRequestTimeout(connectTimeout);
+        factory.setReadTimeout(readTimeout);
         return factory;
     }
 }
-
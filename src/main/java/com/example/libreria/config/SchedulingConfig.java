@@ -0,0 +1,18 @@
+package com.example.libreria.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.time.Clock;
+
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+    
+    // Fecha y hora de las tareas programadas; los tests usan un reloj fijo
+    @Bean
+    public Clock clock() {
+        return Clock.systemDefaultZone();
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.libreria.config;
+
+import com.example.libreria.service.RequestSqlStats;
+import com.example.libreria.service.SqlStatsService;
+import jakarta.persistence.EntityManagerFactory;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+@Configuration
+public class SqlStatsConfig {
+    
+    // Envuelve el DataSource para contar también las sentencias de JdbcTemplate, no solo las de Hibernate
+    @Bean
+    public static BeanPostProcessor sqlStatsDataSourceProxy() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+                    return ProxyDataSourceBuilder.create(dataSource)
+                            .name(beanName)
+                            .listener(new StatementListener())
+                            .build();
+                }
+                return bean;
+            }
+        };
+    }
+    
+    // Cuenta las entidades que materializa Hibernate, incluidas las de cargas perezosas
+    @Bean
+    public PostLoadEventListener entityLoadCounter(EntityManagerFactory entityManagerFactory) {
+        PostLoadEventListener listener = event -> {
+            RequestSqlStats stats = RequestSqlStats.current();
+            if (stats != null) {
+                stats.entityLoaded();
+            }
+        };
+        entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .requireService(EventListenerRegistry.class)
+                .appendListeners(EventType.POST_LOAD, listener);
+        return listener;
+    }
+    
+    @Bean
+    public FilterRegistrationBean<SqlStatsFilter> sqlStatsFilter(
+            SqlStatsService sqlStatsService,
+            @Value("${sql-stats.response-headers:false}") boolean responseHeaders) {
+        FilterRegistrationBean<SqlStatsFilter> registration =
+                new FilterRegistrationBean<>(new SqlStatsFilter(sqlStatsService, responseHeaders));
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+    
+    private static class StatementListener implements QueryExecutionListener {
+        
+        @Override
+        public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            RequestSqlStats stats = RequestSqlStats.current();
+            if (stats != null) {
+                stats.beforeStatement();
+            }
+        }
+        
+        @Override
+        public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            RequestSqlStats stats = RequestSqlStats.current();
+            if (stats != null) {
+                stats.afterStatement();
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.libreria.config;
+
+import com.example.libreria.service.RequestSqlStats;
+import com.example.libreria.service.SqlStatsService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Cuenta las sentencias SQL de cada pedido y las acumula por ruta (método y patrón del
+ * endpoint, no la URL, para no separar cada ID). Con sql-stats.response-headers los totales
+ * del pedido vuelven como headers; para poder agregarlos al final, el cuerpo de la respuesta
+ * se guarda en memoria, así que solo conviene en desarrollo.
+ */
+public class SqlStatsFilter extends OncePerRequestFilter {
+    
+    public static final String QUERIES_HEADER = "X-Sql-Queries";
+    public static final String JDBC_TIME_HEADER = "X-Sql-Time-Ms";
+    public static final String ENTITIES_HEADER = "X-Sql-Entities-Loaded";
+    
+    private final SqlStatsService sqlStatsService;
+    private final boolean responseHeaders;
+    
+    public SqlStatsFilter(SqlStatsService sqlStatsService, boolean responseHeaders) {
+        this.sqlStatsService = sqlStatsService;
+        this.responseHeaders = responseHeaders;
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        RequestSqlStats stats = RequestSqlStats.start();
+        ContentCachingResponseWrapper cachedResponse = responseHeaders ? new ContentCachingResponseWrapper(response) : null;
+        try {
+            filterChain.doFilter(request, cachedResponse != null ? cachedResponse : response);
+        } finally {
+            RequestSqlStats.clear();
+            sqlStatsService.record(route(request), stats);
+            if (cachedResponse != null) {
+                cachedResponse.setHeader(QUERIES_HEADER, String.valueOf(stats.getStatements()));
+                cachedResponse.setHeader(JDBC_TIME_HEADER, String.format(Locale.ROOT, "%.2f", stats.getJdbcNanos() / 1_000_000.0));
+                cachedResponse.setHeader(ENTITIES_HEADER, String.valueOf(stats.getEntitiesLoaded()));
+                cachedResponse.copyBodyToResponse();
+            }
+        }
+    }
+    
+    private static String route(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return request.getMethod() + " " + (pattern != null ? pattern : "UNMAPPED");
+    }
+}
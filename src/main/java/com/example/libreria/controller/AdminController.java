@@ -0,0 +1,88 @@
+package com.example.libreria.controller;
+
+import com.example.libreria.dto.AnalyticsRebuildReportDTO;
+import com.example.libreria.dto.EntityCacheStatsDTO;
+import com.example.libreria.dto.HttpPoolStatsDTO;
+import com.example.libreria.dto.OverdueSweepReportDTO;
+import com.example.libreria.dto.SqlRouteStatsDTO;
+import com.example.libreria.service.EntityCacheService;
+import com.example.libreria.service.HttpClientPoolService;
+import com.example.libreria.service.OverdueSweepService;
+import com.example.libreria.service.RevenueAnalyticsService;
+import com.example.libreria.service.SqlStatsService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+@Tag(name = "Administración", description = "Métricas internas y tareas de mantenimiento")
+public class AdminController {
+    
+    private final HttpClientPoolService httpClientPoolService;
+    private final OverdueSweepService overdueSweepService;
+    private final RevenueAnalyticsService revenueAnalyticsService;
+    private final SqlStatsService sqlStatsService;
+    private final EntityCacheService entityCacheService;
+    
+    @Operation(summary = "Estado del pool HTTP", description = "Retorna las conexiones en uso, libres y en espera del pool hacia la API externa")
+    @ApiResponse(responseCode = "200", description = "Estadísticas del pool obtenidas exitosamente")
+    @GetMapping("/http-pool")
+    public ResponseEntity<HttpPoolStatsDTO> getHttpPoolStats() {
+        return ResponseEntity.ok(httpClientPoolService.getPoolStats());
+    }
+    
+    @Operation(summary = "Ejecutar el barrido de vencidas", description = "Marca como OVERDUE las reservas abiertas con la fecha de devolución pasada y actualiza su multa acumulada. Se ejecuta solo todos los días; este endpoint permite forzarlo")
+    @ApiResponse(responseCode = "200", description = "Barrido ejecutado")
+    @PostMapping("/overdue-sweep")
+    public ResponseEntity<OverdueSweepReportDTO> sweepOverdueReservations() {
+        return ResponseEntity.ok(overdueSweepService.sweep());
+    }
+    
+    @Operation(summary = "Reconstruir estadísticas", description = "Recalcula los acumulados de facturación por día, libro y usuario a partir de todas las reservas, leyendo bloques en paralelo. Mientras dura, las reservas y devoluciones esperan")
+    @ApiResponse(responseCode = "200", description = "Acumulados reconstruidos")
+    @PostMapping("/analytics/rebuild")
+    public ResponseEntity<AnalyticsRebuildReportDTO> rebuildAnalytics() {
+        return ResponseEntity.ok(revenueAnalyticsService.rebuild());
+    }
+    
+    @Operation(summary = "Sentencias SQL por ruta", description = "Retorna, por endpoint, la cantidad de pedidos, las sentencias SQL ejecutadas (total, promedio y máximo por pedido), el tiempo en JDBC, las entidades cargadas y los pedidos que superaron el presupuesto de sentencias. Ordenado por total de sentencias")
+    @ApiResponse(responseCode = "200", description = "Estadísticas SQL obtenidas exitosamente")
+    @GetMapping("/sql-stats")
+    public ResponseEntity<List<SqlRouteStatsDTO>> getSqlStats() {
+        return ResponseEntity.ok(sqlStatsService.getRouteStats());
+    }
+    
+    @Operation(summary = "Reiniciar estadísticas SQL", description = "Descarta las estadísticas SQL acumuladas por ruta")
+    @ApiResponse(responseCode = "204", description = "Estadísticas reiniciadas")
+    @DeleteMapping("/sql-stats")
+    public ResponseEntity<Void> resetSqlStats() {
+        sqlStatsService.reset();
+        return ResponseEntity.noContent().build();
+    }
+    
+    @Operation(summary = "Estado de la caché de entidades", description = "Retorna por región (books, users) los aciertos, fallos y cargas de la caché de segundo nivel. Cada acierto es una lectura por ID que no llegó a la base")
+    @ApiResponse(responseCode = "200", description = "Estadísticas de la caché obtenidas exitosamente")
+    @GetMapping("/entity-cache")
+    public ResponseEntity<List<EntityCacheStatsDTO>> getEntityCacheStats() {
+        return ResponseEntity.ok(entityCacheService.getStats());
+    }
+    
+    @Operation(summary = "Vaciar la caché de entidades", description = "Descarta los libros y usuarios guardados en la caché de segundo nivel. Necesario solo si se modificaron directo en la base")
+    @ApiResponse(responseCode = "204", description = "Caché vaciada")
+    @DeleteMapping("/entity-cache")
+    public ResponseEntity<Void> evictEntityCache() {
+        entityCacheService.evictAll();
+        return ResponseEntity.noContent().build();
+    }
+}
\ No newline at end of file
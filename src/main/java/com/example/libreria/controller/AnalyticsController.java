@@ -0,0 +1,69 @@
+package com.example.libreria.controller;
+
+import com.example.libreria.dto.RevenueRankingDTO;
+import com.example.libreria.dto.RevenueReportDTO;
+import com.example.libreria.service.RevenueAnalyticsService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/analytics")
+@RequiredArgsConstructor
+@Tag(name = "Estadísticas", description = "Facturación por período y rankings de libros y usuarios")
+public class AnalyticsController {
+    
+    private final RevenueAnalyticsService revenueAnalyticsService;
+    
+    @Operation(summary = "Facturación por período", description = "Retorna reservas, devoluciones, alquileres y multas por día o por mes. El alquiler se imputa a la fecha de inicio de la reserva y la multa a la fecha de devolución. Por defecto, los últimos 12 meses")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Reporte obtenido exitosamente"),
+        @ApiResponse(responseCode = "400", description = "La fecha inicial es posterior a la final")
+    })
+    @GetMapping("/revenue")
+    public ResponseEntity<RevenueReportDTO> getRevenue(
+            @Parameter(description = "Fecha inicial, inclusive (yyyy-MM-dd)") @RequestParam(required = false) LocalDate from,
+            @Parameter(description = "Fecha final, inclusive (yyyy-MM-dd); por defecto hoy") @RequestParam(required = false) LocalDate to,
+            @Parameter(description = "DAY o MONTH") @RequestParam(defaultValue = "MONTH") RevenueReportDTO.Granularity granularity) {
+        return ResponseEntity.ok(revenueAnalyticsService.getRevenue(from, to, granularity));
+    }
+    
+    @Operation(summary = "Libros con mayor facturación", description = "Retorna los libros que más facturaron (alquiler más multas) en un rango de meses. Por defecto, los últimos 12 meses")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Ranking obtenido exitosamente"),
+        @ApiResponse(responseCode = "400", description = "El mes inicial es posterior al final")
+    })
+    @GetMapping("/top-books")
+    public ResponseEntity<List<RevenueRankingDTO>> getTopBooks(
+            @Parameter(description = "Mes inicial, inclusive (yyyy-MM)") @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth from,
+            @Parameter(description = "Mes final, inclusive (yyyy-MM); por defecto el actual") @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth to,
+            @Parameter(description = "Cantidad de libros (por defecto 10, máximo 100)") @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(revenueAnalyticsService.getTopBooks(from, to, limit));
+    }
+    
+    @Operation(summary = "Usuarios con mayor facturación", description = "Retorna los usuarios que más facturaron (alquiler más multas) en un rango de meses. Por defecto, los últimos 12 meses")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Ranking obtenido exitosamente"),
+        @ApiResponse(responseCode = "400", description = "El mes inicial es posterior al final")
+    })
+    @GetMapping("/top-users")
+    public ResponseEntity<List<RevenueRankingDTO>> getTopUsers(
+            @Parameter(description = "Mes inicial, inclusive (yyyy-MM)") @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth from,
+            @Parameter(description = "Mes final, inclusive (yyyy-MM); por defecto el actual") @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth to,
+            @Parameter(description = "Cantidad de usuarios (por defecto 10, máximo 100)") @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(revenueAnalyticsService.getTopUsers(from, to, limit));
+    }
+}
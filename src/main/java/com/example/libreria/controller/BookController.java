@@ -1,16 +1,28 @@
 package com.example.libreria.controller;
 
+import com.example.libreria.dto.BookRefreshReportDTO;
+import com.example.libreria.dto.BookRefreshRequestDTO;
 import com.example.libreria.dto.BookResponseDTO;
+import com.example.libreria.dto.SyncJobDTO;
 import com.example.libreria.service.BookService;
+import com.example.libreria.service.CatalogSnapshotService;
+import com.example.libreria.service.SyncJobService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.net.URI;
 import java.util.List;
 
 @RestController
@@ -20,21 +32,70 @@ import java.util.List;
 public class BookController {
     
     private final BookService bookService;
+    private final SyncJobService syncJobService;
     
-    @Operation(summary = "Sincronizar libros", description = "Sincroniza el catálogo de libros desde la API externa. DEBE ejecutarse primero antes de cualquier operación.")
-    @ApiResponse(responseCode = "200", description = "Libros sincronizados exitosamente")
+    @Operation(summary = "Sincronizar libros", description = "Inicia en segundo plano la sincronización del catálogo desde la API externa. DEBE ejecutarse primero antes de cualquier operación. Si ya hay una sincronización en curso, retorna ese mismo trabajo")
+    @ApiResponse(responseCode = "202", description = "Sincronización aceptada. Retorna el trabajo para consultar su estado")
     @PostMapping("/sync")
-    public ResponseEntity<String> syncBooks() {
-        bookService.syncBooksFromExternalApi();
-        return ResponseEntity.ok("Libros sincronizados exitosamente desde la API externa");
+    public ResponseEntity<SyncJobDTO> syncBooks() {
+        SyncJobDTO job = syncJobService.submitSync();
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/books/sync/" + job.getJobId()))
+                .body(job);
     }
     
-    @Operation(summary = "Obtener todos los libros", description = "Retorna el catálogo completo de libros con información de stock")
-    @ApiResponse(responseCode = "200", description = "Lista de libros obtenida exitosamente")
+    @Operation(summary = "Estado de una sincronización", description = "Retorna el estado, los libros procesados (insertados, actualizados y sin cambios) y el error si la sincronización falló")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Trabajo encontrado"),
+        @ApiResponse(responseCode = "400", description = "Trabajo no encontrado")
+    })
+    @GetMapping("/sync/{jobId}")
+    public ResponseEntity<SyncJobDTO> getSyncJob(
+            @Parameter(description = "ID del trabajo de sincronización", required = true) @PathVariable String jobId) {
+        return ResponseEntity.ok(syncJobService.getJob(jobId));
+    }
+    
+    @Operation(summary = "Actualizar libros puntuales", description = "Consulta en paralelo la API externa por cada ID indicado y guarda los cambios en un solo lote, sin sincronizar el catálogo completo")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Actualización completada. Retorna los libros insertados, actualizados, sin cambios y los que fallaron"),
+        @ApiResponse(responseCode = "400", description = "Lista de IDs vacía o demasiado grande")
+    })
+    @PostMapping("/refresh")
+    public ResponseEntity<BookRefreshReportDTO> refreshBooks(@Valid @RequestBody BookRefreshRequestDTO request) {
+        BookRefreshReportDTO report = bookService.refreshBooks(request.getExternalIds());
+        return ResponseEntity.ok(report);
+    }
+    
+    @Operation(summary = "Obtener todos los libros", description = "Retorna el catálogo completo de libros con información de stock. Responde 304 si el ETag enviado en If-None-Match sigue vigente")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Lista de libros obtenida exitosamente",
+                content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                        array = @ArraySchema(schema = @Schema(implementation = BookResponseDTO.class)))),
+        @ApiResponse(responseCode = "304", description = "El catálogo no cambió desde el ETag indicado")
+    })
     @GetMapping
-    public ResponseEntity<List<BookResponseDTO>> getAllBooks() {
-        List<BookResponseDTO> books = bookService.getAllBooks();
-        return ResponseEntity.ok(books);
+    public ResponseEntity<byte[]> getAllBooks(WebRequest request) {
+        CatalogSnapshotService.Snapshot snapshot = bookService.getCatalogSnapshot();
+        if (request.checkNotModified(snapshot.getEtag())) {
+            // checkNotModified ya agregó el ETag a la respuesta 304
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(snapshot.getEtag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(snapshot.getJson());
+    }
+    
+    @Operation(summary = "Buscar libros", description = "Busca por palabras del título o del autor, sin distinguir acentos ni mayúsculas. Las palabras pueden estar incompletas (\"garc marq\" encuentra a García Márquez) y los resultados se ordenan por relevancia")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Libros encontrados, del más al menos relevante"),
+        @ApiResponse(responseCode = "400", description = "Texto de búsqueda vacío")
+    })
+    @GetMapping("/search")
+    public ResponseEntity<List<BookResponseDTO>> searchBooks(
+            @Parameter(description = "Texto a buscar", required = true, example = "cien años") @RequestParam String q,
+            @Parameter(description = "Cantidad máxima de resultados (por defecto 20, máximo 100)") @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(bookService.searchBooks(q, limit));
     }
     
     @Operation(summary = "Obtener libro por ID", description = "Retorna la información de un libro específico")
@@ -1,7 +1,12 @@
 package com.example.libreria.controller;
 
+import com.example.libreria.dto.ReservationBatchRequestDTO;
+import com.example.libreria.dto.ReservationBatchResponseDTO;
+import com.example.libreria.dto.ReservationPageDTO;
 import com.example.libreria.dto.ReservationRequestDTO;
 import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.dto.ReturnBatchRequestDTO;
+import com.example.libreria.dto.ReturnBatchResponseDTO;
 import com.example.libreria.dto.ReturnBookRequestDTO;
 import com.example.libreria.service.ReservationService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -15,8 +20,6 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/api/reservations")
 @RequiredArgsConstructor
@@ -39,6 +42,18 @@ public class ReservationController {
         return ResponseEntity.status(HttpStatus.CREATED).body(reservation);
     }
     
+    @Operation(summary = "Crear reservas en lote", description = "Crea varias reservas en una sola operación. Retorna el resultado de cada reserva en el orden del pedido: las que no se pueden crear (usuario o libro inexistente, sin copias disponibles) se informan con su motivo sin afectar al resto")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Lote procesado. Stock disminuye en 1 por cada reserva creada"),
+        @ApiResponse(responseCode = "400", description = "Datos inválidos o más de 500 reservas")
+    })
+    @PostMapping("/batch")
+    public ResponseEntity<ReservationBatchResponseDTO> createReservations(
+            @Valid @RequestBody ReservationBatchRequestDTO requestDTO) {
+        ReservationBatchResponseDTO result = reservationService.createReservations(requestDTO.getReservations());
+        return ResponseEntity.ok(result);
+    }
+    
     @Operation(summary = "Obtener reserva por ID", description = "Retorna los detalles de una reserva específica")
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Reserva encontrada"),
@@ -51,36 +66,44 @@ public class ReservationController {
         return ResponseEntity.ok(reservation);
     }
     
-    @Operation(summary = "Obtener todas las reservas", description = "Retorna todas las reservas del sistema")
-    @ApiResponse(responseCode = "200", description = "Lista de reservas obtenida exitosamente")
+    @Operation(summary = "Obtener todas las reservas", description = "Retorna las reservas del sistema paginadas por cursor. Usar el nextCursor de la respuesta para pedir la página siguiente")
+    @ApiResponse(responseCode = "200", description = "Página de reservas obtenida exitosamente")
     @GetMapping
-    public ResponseEntity<List<ReservationResponseDTO>> getAllReservations() {
-        List<ReservationResponseDTO> reservations = reservationService.getAllReservations();
+    public ResponseEntity<ReservationPageDTO> getAllReservations(
+            @Parameter(description = "Cursor de la página (nextCursor de la página anterior)") @RequestParam(required = false) Long cursor,
+            @Parameter(description = "Tamaño de página (por defecto 50, máximo 200)") @RequestParam(required = false) Integer size) {
+        ReservationPageDTO reservations = reservationService.getAllReservations(cursor, size);
         return ResponseEntity.ok(reservations);
     }
     
-    @Operation(summary = "Obtener reservas por usuario", description = "Retorna todas las reservas de un usuario específico")
-    @ApiResponse(responseCode = "200", description = "Lista de reservas del usuario")
+    @Operation(summary = "Obtener reservas por usuario", description = "Retorna las reservas de un usuario específico paginadas por cursor")
+    @ApiResponse(responseCode = "200", description = "Página de reservas del usuario")
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<ReservationResponseDTO>> getReservationsByUserId(
-            @Parameter(description = "ID del usuario", required = true) @PathVariable Long userId) {
-        List<ReservationResponseDTO> reservations = reservationService.getReservationsByUserId(userId);
+    public ResponseEntity<ReservationPageDTO> getReservationsByUserId(
+            @Parameter(description = "ID del usuario", required = true) @PathVariable Long userId,
+            @Parameter(description = "Cursor de la página (nextCursor de la página anterior)") @RequestParam(required = false) Long cursor,
+            @Parameter(description = "Tamaño de página (por defecto 50, máximo 200)") @RequestParam(required = false) Integer size) {
+        ReservationPageDTO reservations = reservationService.getReservationsByUserId(userId, cursor, size);
         return ResponseEntity.ok(reservations);
     }
     
-    @Operation(summary = "Obtener reservas activas", description = "Retorna todas las reservas con estado ACTIVE")
-    @ApiResponse(responseCode = "200", description = "Lista de reservas activas")
+    @Operation(summary = "Obtener reservas activas", description = "Retorna las reservas con estado ACTIVE paginadas por cursor")
+    @ApiResponse(responseCode = "200", description = "Página de reservas activas")
     @GetMapping("/active")
-    public ResponseEntity<List<ReservationResponseDTO>> getActiveReservations() {
-        List<ReservationResponseDTO> reservations = reservationService.getActiveReservations();
+    public ResponseEntity<ReservationPageDTO> getActiveReservations(
+            @Parameter(description = "Cursor de la página (nextCursor de la página anterior)") @RequestParam(required = false) Long cursor,
+            @Parameter(description = "Tamaño de página (por defecto 50, máximo 200)") @RequestParam(required = false) Integer size) {
+        ReservationPageDTO reservations = reservationService.getActiveReservations(cursor, size);
         return ResponseEntity.ok(reservations);
     }
     
-    @Operation(summary = "Obtener reservas vencidas", description = "Retorna todas las reservas activas que han pasado su fecha de devolución esperada")
-    @ApiResponse(responseCode = "200", description = "Lista de reservas vencidas")
+    @Operation(summary = "Obtener reservas vencidas", description = "Retorna las reservas vencidas que todavía no se devolvieron, con su multa acumulada, paginadas por cursor. El estado lo actualiza un barrido diario")
+    @ApiResponse(responseCode = "200", description = "Página de reservas vencidas")
     @GetMapping("/overdue")
-    public ResponseEntity<List<ReservationResponseDTO>> getOverdueReservations() {
-        List<ReservationResponseDTO> reservations = reservationService.getOverdueReservations();
+    public ResponseEntity<ReservationPageDTO> getOverdueReservations(
+            @Parameter(description = "Cursor de la página (nextCursor de la página anterior)") @RequestParam(required = false) Long cursor,
+            @Parameter(description = "Tamaño de página (por defecto 50, máximo 200)") @RequestParam(required = false) Integer size) {
+        ReservationPageDTO reservations = reservationService.getOverdueReservations(cursor, size);
         return ResponseEntity.ok(reservations);
     }
     
@@ -97,5 +120,16 @@ public class ReservationController {
         ReservationResponseDTO reservation = reservationService.returnBook(id, returnRequest);
         return ResponseEntity.ok(reservation);
     }
+    
+    @Operation(summary = "Devolver libros en lote", description = "Registra varias devoluciones en una sola operación, con la misma multa del 15% por día de demora. Retorna el resultado de cada devolución en el orden del pedido: las que no se pueden registrar (reserva inexistente o ya devuelta) se informan con su motivo sin afectar al resto")
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Lote procesado. Stock aumenta en 1 por cada libro devuelto"),
+        @ApiResponse(responseCode = "400", description = "Datos inválidos o más de 500 devoluciones")
+    })
+    @PostMapping("/batch/return")
+    public ResponseEntity<ReturnBatchResponseDTO> returnBooks(
+            @Valid @RequestBody ReturnBatchRequestDTO returnRequest) {
+        ReturnBatchResponseDTO result = reservationService.returnBooks(returnRequest.getReturns());
+        return ResponseEntity.ok(result);
+    }
 }
-
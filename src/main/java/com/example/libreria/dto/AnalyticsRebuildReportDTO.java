@@ -0,0 +1,17 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnalyticsRebuildReportDTO {
+    
+    // Reservas leídas y acumulados escritos
+    private long reservations;
+    private int buckets;
+    private int chunks;
+    private long elapsedMillis;
+}
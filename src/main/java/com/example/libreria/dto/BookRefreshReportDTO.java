@@ -0,0 +1,21 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookRefreshReportDTO {
+    
+    private int requested;
+    private int inserted;
+    private int updated;
+    private int unchanged;
+    // ID externo -> motivo por el que no se pudo actualizar
+    private Map<Long, String> failed;
+    private long elapsedMillis;
+}
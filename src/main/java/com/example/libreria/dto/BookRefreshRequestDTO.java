@@ -0,0 +1,20 @@
+package com.example.libreria.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookRefreshRequestDTO {
+    
+    @NotEmpty(message = "Debe indicar al menos un ID externo")
+    @Size(max = 1000, message = "No se pueden actualizar más de 1000 libros por pedido")
+    private List<@NotNull(message = "Los IDs externos no pueden ser nulos") Long> externalIds;
+}
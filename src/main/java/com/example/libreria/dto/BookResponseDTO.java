@@ -1,10 +1,10 @@
 package com.example.libreria.dto;
 
+import com.example.libreria.model.Money;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.math.BigDecimal;
 import java.util.List;
 
 @Data
@@ -18,7 +18,7 @@ public class BookResponseDTO {
     private Integer firstPublishYear;
     private Integer editionCount;
     private Boolean hasFulltext;
-    private BigDecimal price;
+    private Money price;
     private Integer stockQuantity;
     private Integer availableQuantity;
 }
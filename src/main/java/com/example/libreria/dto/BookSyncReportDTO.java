@@ -0,0 +1,16 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookSyncReportDTO {
+    
+    private int inserted;
+    private int updated;
+    private int unchanged;
+    private long elapsedMillis;
+}
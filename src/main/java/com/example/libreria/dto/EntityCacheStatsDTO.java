@@ -0,0 +1,16 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EntityCacheStatsDTO {
+    private String region;
+    private long hits;
+    private long misses;
+    private long puts;
+    private double hitRatio;
+}
@@ -0,0 +1,25 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExternalCatalogDTO {
+    
+    // true si la API externa respondió 304: el catálogo no cambió desde la última sincronización
+    private boolean notModified;
+    
+    // Cantidad de libros leídos de la respuesta
+    private int bookCount;
+    
+    // Validadores HTTP de la respuesta, para enviarlos en la próxima sincronización
+    private String etag;
+    private String lastModified;
+    
+    public static ExternalCatalogDTO notModified() {
+        return new ExternalCatalogDTO(true, 0, null, null);
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HttpPoolStatsDTO {
+    private int maxTotal;
+    private int maxPerRoute;
+    private int leased;
+    private int available;
+    private int pending;
+    private int routes;
+}
@@ -0,0 +1,20 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OverdueSweepReportDTO {
+    
+    // Fecha contra la que se compararon las fechas de devolución
+    private LocalDate asOf;
+    // Reservas vencidas marcadas o con la multa acumulada actualizada
+    private int updated;
+    private int chunks;
+    private long elapsedMillis;
+}
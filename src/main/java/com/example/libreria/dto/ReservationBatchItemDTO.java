@@ -0,0 +1,19 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationBatchItemDTO {
+    
+    // Posición de la reserva en el pedido
+    private int index;
+    private boolean success;
+    // Reserva creada; null si no se pudo crear
+    private ReservationResponseDTO reservation;
+    // Motivo por el que no se pudo crear; null si se creó
+    private String error;
+}
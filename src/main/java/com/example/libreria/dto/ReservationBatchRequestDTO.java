@@ -0,0 +1,21 @@
+package com.example.libreria.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationBatchRequestDTO {
+    
+    @NotEmpty(message = "Debe indicar al menos una reserva")
+    @Size(max = 500, message = "No se pueden crear más de 500 reservas por pedido")
+    private List<@NotNull(message = "Las reservas no pueden ser nulas") @Valid ReservationRequestDTO> reservations;
+}
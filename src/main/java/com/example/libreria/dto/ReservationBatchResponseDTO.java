@@ -0,0 +1,20 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationBatchResponseDTO {
+    
+    private int requested;
+    private int created;
+    private int failed;
+    // Un resultado por reserva, en el mismo orden del pedido
+    private List<ReservationBatchItemDTO> results;
+    private long elapsedMillis;
+}
@@ -0,0 +1,18 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationPageDTO {
+    
+    private List<ReservationResponseDTO> content;
+    
+    // ID de la última reserva de la página; null si no hay más páginas
+    private Long nextCursor;
+}
@@ -1,11 +1,11 @@
 package com.example.libreria.dto;
 
+import com.example.libreria.model.Money;
 import com.example.libreria.model.Reservation;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
@@ -23,9 +23,11 @@ public class ReservationResponseDTO {
     private LocalDate startDate;
     private LocalDate expectedReturnDate;
     private LocalDate actualReturnDate;
-    private BigDecimal dailyRate;
-    private BigDecimal totalFee;
-    private BigDecimal lateFee;
+    private Money dailyRate;
+    private Money totalFee;
+    private Money lateFee;
+    // Multa que lleva acumulada mientras el libro no se devuelve (se actualiza a diario)
+    private Money accruedLateFee;
     private Reservation.ReservationStatus status;
     private LocalDateTime createdAt;
 }
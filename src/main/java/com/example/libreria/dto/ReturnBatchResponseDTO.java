@@ -0,0 +1,20 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReturnBatchResponseDTO {
+    
+    private int requested;
+    private int returned;
+    private int failed;
+    // Un resultado por devolución, en el mismo orden del pedido
+    private List<ReservationBatchItemDTO> results;
+    private long elapsedMillis;
+}
@@ -0,0 +1,21 @@
+package com.example.libreria.dto;
+
+import com.example.libreria.model.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevenuePeriodDTO {
+    
+    // Día (2026-03-15) o mes (2026-03) según la granularidad del reporte
+    private String period;
+    // Reservas que comienzan en el período y devoluciones registradas en el período
+    private long reservations;
+    private long returns;
+    private Money rentalRevenue;
+    private Money lateFeeRevenue;
+    private Money totalRevenue;
+}
@@ -0,0 +1,22 @@
+package com.example.libreria.dto;
+
+import com.example.libreria.model.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevenueRankingDTO {
+    
+    // ID externo del libro o ID del usuario
+    private Long id;
+    // Título del libro o nombre del usuario; null si ya no existe
+    private String name;
+    private long reservations;
+    private long returns;
+    private Money rentalRevenue;
+    private Money lateFeeRevenue;
+    private Money totalRevenue;
+}
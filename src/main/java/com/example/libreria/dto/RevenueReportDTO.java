@@ -0,0 +1,31 @@
+package com.example.libreria.dto;
+
+import com.example.libreria.model.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RevenueReportDTO {
+    
+    private LocalDate from;
+    private LocalDate to;
+    private Granularity granularity;
+    // Solo los períodos con movimientos, en orden
+    private List<RevenuePeriodDTO> periods;
+    private long reservations;
+    private long returns;
+    private Money rentalRevenue;
+    private Money lateFeeRevenue;
+    private Money totalRevenue;
+    
+    public enum Granularity {
+        DAY,
+        MONTH
+    }
+}
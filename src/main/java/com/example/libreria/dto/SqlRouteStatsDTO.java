@@ -0,0 +1,19 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SqlRouteStatsDTO {
+    private String route;
+    private long requests;
+    private long statements;
+    private double avgStatements;
+    private long maxStatements;
+    private double jdbcTimeMs;
+    private long entitiesLoaded;
+    private long overBudget;
+}
@@ -0,0 +1,28 @@
+package com.example.libreria.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SyncJobDTO {
+    private String jobId;
+    private Status status;
+    private LocalDateTime submittedAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private int processed;
+    private int inserted;
+    private int updated;
+    private int unchanged;
+    private long elapsedMillis;
+    private String error;
+    
+    public enum Status {
+        PENDING, RUNNING, COMPLETED, FAILED
+    }
+}
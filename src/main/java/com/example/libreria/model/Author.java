@@ -0,0 +1,23 @@
+package com.example.libreria.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Un autor por nombre: los libros que comparten autor apuntan a la misma fila
+@Entity
+@Table(name = "authors")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Author {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "authors_seq")
+    @SequenceGenerator(name = "authors_seq", sequenceName = "authors_seq", allocationSize = 50)
+    private Long id;
+    
+    @Column(nullable = false, unique = true)
+    private String name;
+}
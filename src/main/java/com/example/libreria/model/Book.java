@@ -3,17 +3,30 @@ package com.example.libreria.model;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import org.springframework.data.domain.Persistable;
 
-import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 
+// Los datos del libro se guardan en la caché de segundo nivel; el stock y availableQuantity
+// cambian solo con sentencias condicionales de BookStockRepository que no pasan por la caché,
+// así que esos valores cacheados no se usan para decidir ni para responder. @DynamicUpdate
+// deja esas columnas fuera del UPDATE cuando se editan los demás datos del libro
 @Entity
 @Table(name = "books")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "books")
+@DynamicUpdate
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-public class Book {
+public class Book implements Persistable<Long> {
     
     @Id
     @Column(name = "external_id", unique = true)
@@ -22,10 +35,16 @@ public class Book {
     @Column(nullable = false)
     private String title;
     
-    @ElementCollection
-    @CollectionTable(name = "book_authors", joinColumns = @JoinColumn(name = "book_id"))
-    @Column(name = "author_name")
-    private List<String> authorName;
+    // Autores compartidos entre libros; al cargar varios libros sin JOIN se traen en grupos
+    @ManyToMany
+    @JoinTable(name = "book_authors",
+            joinColumns = @JoinColumn(name = "book_id"),
+            inverseJoinColumns = @JoinColumn(name = "author_id"))
+    @OrderColumn(name = "author_order")
+    @BatchSize(size = 500)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private List<Author> authors = new ArrayList<>();
     
     @Column(name = "first_publish_year")
     private Integer firstPublishYear;
@@ -37,7 +56,7 @@ public class Book {
     private Boolean hasFulltext;
     
     @Column(nullable = false, precision = 10, scale = 2)
-    private BigDecimal price;
+    private Money price;
     
     // Campos adicionales para inventario
     @Column(name = "stock_quantity", nullable = false)
@@ -45,5 +64,32 @@ public class Book {
     
     @Column(name = "available_quantity", nullable = false)
     private Integer availableQuantity = 0;
+    
+    // Hash de los datos recibidos de la API externa en la última sincronización
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+    
+    // El ID es asignado (viene de la API externa): sin esta marca Spring Data
+    // haría un merge (SELECT previo) por cada libro nuevo en lugar de un persist
+    @Transient
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private boolean persisted;
+    
+    @Override
+    public Long getId() {
+        return externalId;
+    }
+    
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+    
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
 }
 
@@ -0,0 +1,116 @@
+package com.example.libreria.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Importe en pesos con dos decimales, guardado como un long de centavos.
+ * Reemplaza a BigDecimal en precios y tarifas: las cuentas se hacen sobre el long sin
+ * crear objetos intermedios y redondean HALF_UP al centavo, igual que setScale(2, HALF_UP).
+ * En JSON se escribe como número (15.99) y en la base como DECIMAL(10, 2) mediante {@link MoneyConverter}.
+ */
+@JsonSerialize(using = Money.Serializer.class)
+@JsonDeserialize(using = Money.Deserializer.class)
+@Schema(type = "number", format = "decimal", example = "15.99")
+public final class Money implements Comparable<Money>, Serializable {
+    
+    public static final Money ZERO = new Money(0);
+    
+    private static final int SCALE = 2;
+    private static final long CENTS_PER_UNIT = 100;
+    
+    private final long cents;
+    
+    private Money(long cents) {
+        this.cents = cents;
+    }
+    
+    public static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+    
+    public static Money of(BigDecimal amount) {
+        return ofCents(amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+    }
+    
+    public static Money of(String amount) {
+        return of(new BigDecimal(amount));
+    }
+    
+    public long getCents() {
+        return cents;
+    }
+    
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+    
+    // Operaciones sobre centavos: solo aritmética de long, sin reservar memoria
+    
+    public static long multiply(long cents, long factor) {
+        return Math.multiplyExact(cents, factor);
+    }
+    
+    // cents × percent / 100, redondeado HALF_UP al centavo
+    public static long percentage(long cents, long percent) {
+        return divideHalfUp(Math.multiplyExact(cents, percent), 100);
+    }
+    
+    static long divideHalfUp(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        // HALF_UP redondea alejándose de cero cuando el resto es al menos la mitad
+        if (Math.abs(remainder) * 2 >= Math.abs(divisor)) {
+            quotient += (dividend < 0) == (divisor < 0) ? 1 : -1;
+        }
+        return quotient;
+    }
+    
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+    
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Money money && money.cents == cents;
+    }
+    
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cents);
+    }
+    
+    @Override
+    public String toString() {
+        long units = Math.abs(cents / CENTS_PER_UNIT);
+        long fraction = Math.abs(cents % CENTS_PER_UNIT);
+        return (cents < 0 ? "-" : "") + units + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+    
+    static class Serializer extends JsonSerializer<Money> {
+        @Override
+        public void serialize(Money value, JsonGenerator generator, SerializerProvider serializers) throws IOException {
+            generator.writeNumber(value.toString());
+        }
+    }
+    
+    static class Deserializer extends JsonDeserializer<Money> {
+        @Override
+        public Money deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            return Money.of(parser.getDecimalValue());
+        }
+    }
+}
@@ -5,7 +5,6 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
@@ -16,8 +15,11 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class Reservation {
     
+    // Secuencia con bloques de 50 IDs: a diferencia de IDENTITY permite que Hibernate
+    // agrupe los INSERT en lotes JDBC (hibernate.jdbc.batch_size)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reservations_seq")
+    @SequenceGenerator(name = "reservations_seq", sequenceName = "reservations_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -41,13 +43,17 @@ public class Reservation {
     private LocalDate actualReturnDate;
     
     @Column(name = "daily_rate", nullable = false, precision = 10, scale = 2)
-    private BigDecimal dailyRate;
+    private Money dailyRate;
     
     @Column(name = "total_fee", precision = 10, scale = 2)
-    private BigDecimal totalFee;
+    private Money totalFee;
     
     @Column(name = "late_fee", precision = 10, scale = 2)
-    private BigDecimal lateFee = BigDecimal.ZERO;
+    private Money lateFee = Money.ZERO;
+    
+    // La actualiza el barrido diario de vencidas mientras la reserva sigue abierta
+    @Column(name = "accrued_late_fee", precision = 10, scale = 2)
+    private Money accruedLateFee = Money.ZERO;
     
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
@@ -64,8 +70,14 @@ public class Reservation {
         }
     }
     
+    // OVERDUE sin fecha de devolución: vencida y todavía sin devolver.
+    // OVERDUE con fecha de devolución: devuelta con demora
     public enum ReservationStatus {
         ACTIVE, RETURNED, OVERDUE
     }
+    
+    public boolean isOpen() {
+        return actualReturnDate == null && status != ReservationStatus.RETURNED;
+    }
 }
 
@@ -0,0 +1,15 @@
+package com.example.libreria.repository;
+
+import com.example.libreria.model.Author;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface AuthorRepository extends JpaRepository<Author, Long> {
+    
+    // Autores ya registrados de un bloque de la sincronización, en una sola consulta
+    List<Author> findByNameIn(Collection<String> names);
+}
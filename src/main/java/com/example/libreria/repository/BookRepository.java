@@ -1,16 +1,43 @@
 package com.example.libreria.repository;
 
 import com.example.libreria.model.Book;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface BookRepository extends JpaRepository<Book, Long> {
+public interface BookRepository extends JpaRepository<Book, Long>, BookStockRepository {
     
     Optional<Book> findByExternalId(Long externalId);
     
     boolean existsByExternalId(Long externalId);
+    
+    // Hashes de contenido de un bloque de la sincronización, sin cargar las entidades
+    @Query("SELECT b.externalId AS externalId, b.contentHash AS contentHash FROM Book b WHERE b.externalId IN :externalIds")
+    List<ContentHashView> findContentHashesByExternalIdIn(@Param("externalIds") Collection<Long> externalIds);
+    
+    // Precarga de un bloque de la sincronización con sus autores en una sola consulta
+    @EntityGraph(attributePaths = "authors")
+    List<Book> findAllWithAuthorsByExternalIdIn(Collection<Long> externalIds);
+    
+    // Catálogo completo con sus autores en una sola consulta
+    @EntityGraph(attributePaths = "authors")
+    @Query("SELECT b FROM Book b")
+    List<Book> findAllWithAuthors();
+    
+    // Cantidad disponible leída de la base, sin pasar por la entidad ya cargada
+    @Query("SELECT b.availableQuantity FROM Book b WHERE b.externalId = :externalId")
+    Optional<Integer> findAvailableQuantityByExternalId(@Param("externalId") Long externalId);
+    
+    interface ContentHashView {
+        Long getExternalId();
+        String getContentHash();
+    }
 }
 
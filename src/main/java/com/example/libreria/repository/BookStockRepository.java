@@ -0,0 +1,25 @@
+package com.example.libreria.repository;
+
+/**
+ * Cambios del stock y de la cantidad disponible de un libro con actualizaciones condicionales. Se envían
+ * por JDBC y no como UPDATE de JPQL: Hibernate vacía toda la región de libros de la caché de
+ * segundo nivel con cada UPDATE masivo, y eso pasaría con cada reserva.
+ */
+public interface BookStockRepository {
+    
+    // Descuenta una copia solo si queda alguna disponible (retorna 0 si no se pudo)
+    int decrementAvailableQuantity(Long externalId);
+    
+    // Descuenta varias copias en una sola sentencia solo si alcanzan todas (retorna 0 si no se pudo)
+    int decrementAvailableQuantityBy(Long externalId, int quantity);
+    
+    // Repone una copia solo si no se supera el stock (retorna 0 si no se pudo)
+    int incrementAvailableQuantity(Long externalId);
+    
+    // Repone varias copias en una sola sentencia solo si no se supera el stock (retorna 0 si no se pudo)
+    int incrementAvailableQuantityBy(Long externalId, int quantity);
+    
+    // Cambia el stock y suma la diferencia a las disponibles solo si no quedan por debajo de
+    // los libros reservados (retorna 0 si no se pudo)
+    int updateStockQuantity(Long externalId, int stockQuantity);
+}
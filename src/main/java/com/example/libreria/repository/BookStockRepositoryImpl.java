@@ -0,0 +1,48 @@
+package com.example.libreria.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// Usa la conexión de la transacción en curso, igual que los repositorios de Spring Data
+@RequiredArgsConstructor
+public class BookStockRepositoryImpl implements BookStockRepository {
+    
+    private static final String DECREMENT =
+            "UPDATE books SET available_quantity = available_quantity - ? " +
+            "WHERE external_id = ? AND available_quantity >= ?";
+    
+    private static final String INCREMENT =
+            "UPDATE books SET available_quantity = available_quantity + ? " +
+            "WHERE external_id = ? AND available_quantity + ? <= stock_quantity";
+    
+    private static final String UPDATE_STOCK =
+            "UPDATE books SET available_quantity = available_quantity + (? - stock_quantity), stock_quantity = ? " +
+            "WHERE external_id = ? AND available_quantity + (? - stock_quantity) >= 0";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    @Override
+    public int decrementAvailableQuantity(Long externalId) {
+        return decrementAvailableQuantityBy(externalId, 1);
+    }
+    
+    @Override
+    public int decrementAvailableQuantityBy(Long externalId, int quantity) {
+        return jdbcTemplate.update(DECREMENT, quantity, externalId, quantity);
+    }
+    
+    @Override
+    public int incrementAvailableQuantity(Long externalId) {
+        return incrementAvailableQuantityBy(externalId, 1);
+    }
+    
+    @Override
+    public int incrementAvailableQuantityBy(Long externalId, int quantity) {
+        return jdbcTemplate.update(INCREMENT, quantity, externalId, quantity);
+    }
+    
+    @Override
+    public int updateStockQuantity(Long externalId, int stockQuantity) {
+        return jdbcTemplate.update(UPDATE_STOCK, stockQuantity, stockQuantity, externalId, stockQuantity);
+    }
+}
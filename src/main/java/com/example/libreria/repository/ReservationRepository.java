@@ -1,25 +1,120 @@
 package com.example.libreria.repository;
 
 import com.example.libreria.model.Reservation;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ReservationRepository extends JpaRepository<Reservation, Long> {
     
+    // Todas las consultas de listado son paginadas por cursor (keyset sobre id):
+    // cada página lee como máximo "limit" filas a partir del ID recibido.
+    // Traen usuario y libro en el mismo JOIN para que armar los DTOs no dispare
+    // una consulta extra por reserva
+    
+    @Query("SELECT r FROM Reservation r JOIN FETCH r.user JOIN FETCH r.book " +
+           "WHERE r.id > :cursor ORDER BY r.id")
+    List<Reservation> findByIdGreaterThanOrderByIdAsc(@Param("cursor") Long cursor, Limit limit);
+    
     // Buscar reservas por ID de usuario
-    List<Reservation> findByUserId(Long userId);
+    @Query("SELECT r FROM Reservation r JOIN FETCH r.user JOIN FETCH r.book " +
+           "WHERE r.user.id = :userId AND r.id > :cursor ORDER BY r.id")
+    List<Reservation> findByUserIdAndIdGreaterThanOrderByIdAsc(@Param("userId") Long userId,
+                                                               @Param("cursor") Long cursor, Limit limit);
     
     // Buscar reservas por estado
-    List<Reservation> findByStatus(Reservation.ReservationStatus status);
+    @Query("SELECT r FROM Reservation r JOIN FETCH r.user JOIN FETCH r.book " +
+           "WHERE r.status = :status AND r.id > :cursor ORDER BY r.id")
+    List<Reservation> findByStatusAndIdGreaterThanOrderByIdAsc(@Param("status") Reservation.ReservationStatus status,
+                                                               @Param("cursor") Long cursor, Limit limit);
+    
+    // Buscar reservas vencidas sin devolver. El estado lo mantiene el barrido diario
+    // (OverdueSweepService): la consulta recorre el índice de estado sin comparar fechas
+    @Query("SELECT r FROM Reservation r JOIN FETCH r.user JOIN FETCH r.book " +
+           "WHERE r.status = 'OVERDUE' AND r.actualReturnDate IS NULL " +
+           "AND r.id > :cursor ORDER BY r.id")
+    List<Reservation> findOverdueReservations(@Param("cursor") Long cursor, Limit limit);
+    
+    // Rango de IDs de las reservas abiertas vencidas a la fecha; el barrido lo recorre por bloques
+    @Query("SELECT MIN(r.id) AS minId, MAX(r.id) AS maxId FROM Reservation r " +
+           "WHERE r.status IN ('ACTIVE', 'OVERDUE') AND r.actualReturnDate IS NULL " +
+           "AND r.expectedReturnDate < :today")
+    IdRange findOverdueIdRange(@Param("today") LocalDate today);
+    
+    // Rango de IDs de todas las reservas; la reconstrucción de estadísticas lo recorre por bloques
+    @Query("SELECT MIN(r.id) AS minId, MAX(r.id) AS maxId FROM Reservation r")
+    IdRange findIdRange();
+    
+    // Marca como vencidas las reservas abiertas del bloque y recalcula su multa acumulada
+    // (tarifa diaria × tasa × días de demora, redondeada al centavo) en una sola sentencia.
+    // Sin declarar la tabla afectada, Hibernate vaciaría toda la caché de segundo nivel
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "reservations"))
+    @Query(value = "UPDATE reservations SET status = 'OVERDUE', " +
+                   "accrued_late_fee = ROUND(daily_rate * :lateFeeRate * DATEDIFF(DAY, expected_return_date, :today), 2) " +
+                   "WHERE status IN ('ACTIVE', 'OVERDUE') AND actual_return_date IS NULL " +
+                   "AND expected_return_date < :today AND id > :fromId AND id <= :toId",
+           nativeQuery = true)
+    int markOverdue(@Param("today") LocalDate today, @Param("lateFeeRate") BigDecimal lateFeeRate,
+                    @Param("fromId") long fromId, @Param("toId") long toId);
     
-    // Buscar reservas vencidas (activas con fecha de devolución esperada pasada)
-    @Query("SELECT r FROM Reservation r WHERE r.status = 'ACTIVE' AND r.expectedReturnDate < CURRENT_DATE")
-    List<Reservation> findOverdueReservations();
+    // Borra todas las reservas de un usuario en una sola sentencia, sin cargarlas, y las retorna
+    // agrupadas por libro, fecha de inicio y fecha de devolución (sin fecha, seguían prestadas).
+    // Las filas borradas se agrupan en la misma sentencia (tabla OLD TABLE de H2): una devolución
+    // simultánea espera el bloqueo y no se cuenta dos veces
+    @Query(value = "SELECT book_external_id AS bookExternalId, start_date AS startDate, " +
+                   "actual_return_date AS actualReturnDate, COUNT(*) AS reservations, " +
+                   "SUM(total_fee) AS totalFee, SUM(late_fee) AS lateFee " +
+                   "FROM OLD TABLE (DELETE FROM reservations WHERE user_id = :userId) " +
+                   "GROUP BY book_external_id, start_date, actual_return_date",
+           nativeQuery = true)
+    List<DeletedHistoryView> deleteByUserIdSummarizing(@Param("userId") Long userId);
+    
+    // Buscar una reserva con su usuario y libro ya cargados
+    @EntityGraph(attributePaths = {"user", "book"})
+    Optional<Reservation> findWithUserAndBookById(Long id);
+    
+    // Reserva a devolver, bloqueada hasta el fin de la transacción: una devolución simultánea
+    // de la misma reserva espera y después la encuentra ya devuelta
+    @EntityGraph(attributePaths = {"user", "book"})
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM Reservation r WHERE r.id = :id")
+    Optional<Reservation> findForReturnById(@Param("id") Long id);
+    
+    // Varias reservas a devolver en una sola consulta, bloqueadas en orden de ID
+    // para que dos lotes con las mismas reservas no se bloqueen entre sí
+    @EntityGraph(attributePaths = {"user", "book"})
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM Reservation r WHERE r.id IN :ids ORDER BY r.id")
+    List<Reservation> findForReturnByIdIn(@Param("ids") Collection<Long> ids);
+    
+    interface DeletedHistoryView {
+        Long getBookExternalId();
+        LocalDate getStartDate();
+        LocalDate getActualReturnDate();
+        long getReservations();
+        BigDecimal getTotalFee();
+        BigDecimal getLateFee();
+    }
+    
+    interface IdRange {
+        Long getMinId();
+        Long getMaxId();
+    }
 }
-
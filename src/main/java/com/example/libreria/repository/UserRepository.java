@@ -2,9 +2,11 @@ package com.example.libreria.repository;
 
 import com.example.libreria.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
@@ -12,5 +14,9 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     
     boolean existsByEmail(String email);
+    
+    // Todos los emails, leídos de a uno para cargar el filtro de EmailFilterService
+    @Query("SELECT u.email FROM User u")
+    Stream<String> streamAllEmails();
 }
 
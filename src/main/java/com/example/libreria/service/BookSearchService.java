@@ -0,0 +1,272 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.BookResponseDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Índice invertido en memoria sobre el título y los autores de los libros, para
+ * GET /api/books/search. Los textos se separan en términos sin acentos ni mayúsculas
+ * ("García" y "garcia" son el mismo término) y cada término apunta a la lista ordenada
+ * de documentos que lo contienen. Los términos se guardan ordenados, así que los que
+ * empiezan con un prefijo se resuelven con una búsqueda por rango.
+ * <p>
+ * Un libro modificado se agrega como documento nuevo y el anterior queda marcado como
+ * borrado; cuando los borrados superan a los vigentes el índice se reconstruye.
+ */
+@Service
+@Slf4j
+public class BookSearchService {
+
+    // Puntaje de cada término de la consulta según dónde y cómo coincide
+    private static final float TITLE_EXACT = 3f;
+    private static final float TITLE_PREFIX = 2f;
+    private static final float AUTHOR_EXACT = 2f;
+    private static final float AUTHOR_PREFIX = 1.5f;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final String[] NO_TOKENS = new String[0];
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, Postings> terms = new TreeMap<>();
+    // Posición = número de documento; null si el documento fue reemplazado o borrado
+    private final List<Doc> docs = new ArrayList<>();
+    private final Map<Long, Integer> docByExternalId = new HashMap<>();
+    private int deleted;
+
+    public void replaceAll(Collection<BookResponseDTO> catalog) {
+        lock.writeLock().lock();
+        try {
+            terms.clear();
+            docs.clear();
+            docByExternalId.clear();
+            deleted = 0;
+            catalog.forEach(this::index);
+            log.info("Search index rebuilt with {} books and {} terms", docs.size(), terms.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void putAll(Collection<BookResponseDTO> changed) {
+        if (changed.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            changed.forEach(this::index);
+            if (deleted > docs.size() - deleted) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Retorna los IDs externos de los libros que contienen todos los términos de la
+     * consulta (el último puede estar incompleto: cada término se busca como prefijo),
+     * ordenados por relevancia. Pesa más una coincidencia en el título que en el autor,
+     * y una palabra completa que un prefijo; a igual puntaje van primero los títulos cortos.
+     */
+    public List<Long> search(String query, int limit) {
+        String[] queryTokens = distinct(tokenize(query));
+        if (queryTokens.length == 0 || limit <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            // Los candidatos salen del término con menos documentos; el resto se verifica
+            // sobre los términos de cada candidato
+            Collection<Postings> candidates = null;
+            int fewest = Integer.MAX_VALUE;
+            for (String token : queryTokens) {
+                Collection<Postings> matching = terms.subMap(token, true, token + Character.MAX_VALUE, false).values();
+                int count = countUpTo(matching, fewest);
+                if (count < fewest) {
+                    fewest = count;
+                    candidates = matching;
+                }
+            }
+            if (fewest == 0) {
+                return List.of();
+            }
+
+            PriorityQueue<Hit> top = new PriorityQueue<>(limit + 1, Hit.WORST_FIRST);
+            // Un documento aparece en varias listas si tiene más de un término con el mismo prefijo
+            BitSet seen = candidates.size() > 1 ? new BitSet(docs.size()) : null;
+            for (Postings postings : candidates) {
+                for (int i = 0; i < postings.size; i++) {
+                    int docId = postings.docs[i];
+                    Doc doc = docs.get(docId);
+                    if (doc == null || (seen != null && seen.get(docId))) {
+                        continue;
+                    }
+                    if (seen != null) {
+                        seen.set(docId);
+                    }
+                    float score = score(doc, queryTokens);
+                    if (score > 0) {
+                        top.offer(new Hit(doc, score));
+                        if (top.size() > limit) {
+                            top.poll();
+                        }
+                    }
+                }
+            }
+
+            Long[] result = new Long[top.size()];
+            for (int i = result.length - 1; i >= 0; i--) {
+                result[i] = top.poll().doc.externalId;
+            }
+            return Arrays.asList(result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size() - deleted;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Texto en minúsculas y sin acentos, separado en letras y dígitos: "Cien años" -> [cien, anos]
+    static String[] tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return NO_TOKENS;
+        }
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        String[] tokens = SEPARATORS.split(normalized.toLowerCase(Locale.ROOT));
+        if (tokens.length > 0 && tokens[0].isEmpty()) {
+            tokens = Arrays.copyOfRange(tokens, 1, tokens.length);
+        }
+        return tokens;
+    }
+
+    private static String[] distinct(String[] tokens) {
+        return new LinkedHashSet<>(Arrays.asList(tokens)).toArray(NO_TOKENS);
+    }
+
+    private void index(BookResponseDTO book) {
+        Integer previous = docByExternalId.get(book.getExternalId());
+        if (previous != null) {
+            docs.set(previous, null);
+            deleted++;
+        }
+
+        String[] authorTokens = book.getAuthorName() == null ? NO_TOKENS
+                : tokenize(String.join(" ", book.getAuthorName()));
+        add(new Doc(book.getExternalId(), tokenize(book.getTitle()), authorTokens));
+    }
+
+    private void add(Doc doc) {
+        int docId = docs.size();
+        docs.add(doc);
+        docByExternalId.put(doc.externalId, docId);
+
+        // Los números de documento crecen, así que cada lista queda ordenada sin reordenar
+        Set<String> docTerms = new HashSet<>(Arrays.asList(doc.titleTokens));
+        docTerms.addAll(Arrays.asList(doc.authorTokens));
+        for (String term : docTerms) {
+            terms.computeIfAbsent(term, t -> new Postings()).add(docId);
+        }
+    }
+
+    private void compact() {
+        List<Doc> live = docs.stream().filter(Objects::nonNull).toList();
+        terms.clear();
+        docs.clear();
+        docByExternalId.clear();
+        deleted = 0;
+        live.forEach(this::add);
+        log.info("Search index compacted to {} books", docs.size());
+    }
+
+    // Cuenta documentos hasta superar el límite: no hace falta el total de un prefijo muy común
+    private static int countUpTo(Collection<Postings> matching, int limit) {
+        int count = 0;
+        for (Postings postings : matching) {
+            count += postings.size;
+            if (count >= limit) {
+                return count;
+            }
+        }
+        return count;
+    }
+
+    private static float score(Doc doc, String[] queryTokens) {
+        float score = 0;
+        for (String token : queryTokens) {
+            float best = Math.max(match(doc.titleTokens, token, TITLE_EXACT, TITLE_PREFIX),
+                    match(doc.authorTokens, token, AUTHOR_EXACT, AUTHOR_PREFIX));
+            if (best == 0) {
+                return 0;
+            }
+            score += best;
+        }
+        return score;
+    }
+
+    private static float match(String[] docTokens, String token, float exact, float prefix) {
+        float best = 0;
+        for (String docToken : docTokens) {
+            if (docToken.equals(token)) {
+                return exact;
+            }
+            if (docToken.startsWith(token)) {
+                best = prefix;
+            }
+        }
+        return best;
+    }
+
+    private record Doc(long externalId, String[] titleTokens, String[] authorTokens) {
+    }
+
+    private record Hit(Doc doc, float score) {
+
+        // El primero de la cola es el que sale al superar el límite
+        static final Comparator<Hit> WORST_FIRST = Comparator.comparingDouble(Hit::score)
+                .thenComparing(hit -> hit.doc.titleTokens.length, Comparator.reverseOrder())
+                .thenComparing(hit -> hit.doc.externalId, Comparator.reverseOrder());
+    }
+
+    // Lista creciente de números de documento, sin objetos por elemento
+    private static final class Postings {
+        private int[] docs = new int[2];
+        private int size;
+
+        void add(int docId) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = docId;
+        }
+    }
+}
@@ -1,53 +1,311 @@
 package com.example.libreria.service;
 
+import com.example.libreria.dto.BookRefreshReportDTO;
 import com.example.libreria.dto.BookResponseDTO;
+import com.example.libreria.dto.BookSyncReportDTO;
 import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.dto.ExternalCatalogDTO;
+import com.example.libreria.model.Author;
 import com.example.libreria.model.Book;
+import com.example.libreria.model.Money;
+import com.example.libreria.repository.AuthorRepository;
 import com.example.libreria.repository.BookRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
+@Timed(value = "library.service", description = "Métodos públicos de los servicios del dominio")
 public class BookService {
     
+    // Intentos del descuento agrupado antes de dar por agotado el libro
+    private static final int RESERVE_COPIES_ATTEMPTS = 5;
+    
+    static final int DEFAULT_SEARCH_LIMIT = 20;
+    static final int MAX_SEARCH_LIMIT = 100;
+    
     private final BookRepository bookRepository;
+    private final AuthorRepository authorRepository;
     private final ExternalBookService externalBookService;
+    private final TransactionTemplate transactionTemplate;
+    private final CatalogSnapshotService catalogSnapshotService;
+    private final BookSearchService bookSearchService;
+    @Qualifier("catalogSyncExecutor")
+    private final Executor catalogSyncExecutor;
     
-    @Transactional
-    public void syncBooksFromExternalApi() {
+    @Qualifier("bookRefreshExecutor")
+    private final Executor bookRefreshExecutor;
+    
+    @Value("${catalog.sync.chunk-size:500}")
+    private int syncChunkSize;
+    
+    public BookSyncReportDTO syncBooksFromExternalApi() {
+        return syncBooksFromExternalApi(report -> {});
+    }
+    
+    // onChunkCommitted recibe el reporte acumulado cada vez que se confirma un bloque
+    public BookSyncReportDTO syncBooksFromExternalApi(Consumer<BookSyncReportDTO> onChunkCommitted) {
         log.info("Synchronizing books from external API");
-        List<ExternalBookDTO> externalBooks = externalBookService.fetchAllBooks();
+        long start = System.nanoTime();
+        BookSyncReportDTO report = new BookSyncReportDTO();
+        
+        // Cada bloque se guarda y confirma en su propia transacción en el ejecutor de
+        // sincronización, mientras este hilo sigue descargando y parseando el siguiente
+        AtomicReference<CompletableFuture<Void>> inFlight = new AtomicReference<>(CompletableFuture.completedFuture(null));
+        ExternalCatalogDTO catalog;
+        try {
+            catalog = externalBookService.streamCatalogIfModified(syncChunkSize, chunk -> {
+                awaitChunk(inFlight.get());
+                inFlight.set(CompletableFuture.runAsync(() -> persistChunk(chunk, report, onChunkCommitted), catalogSyncExecutor));
+            });
+        } finally {
+            awaitChunk(inFlight.get());
+        }
+        
+        if (!catalog.isNotModified()) {
+            externalBookService.rememberValidators(catalog);
+        }
+        
+        report.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        log.info("Synchronization completed: {} inserted, {} updated, {} unchanged in {} ms",
+                report.getInserted(), report.getUpdated(), report.getUnchanged(), report.getElapsedMillis());
+        return report;
+    }
+    
+    private void persistChunk(List<ExternalBookDTO> chunk, BookSyncReportDTO report,
+                              Consumer<BookSyncReportDTO> onChunkCommitted) {
+        BookSyncReportDTO counts = new BookSyncReportDTO();
+        List<BookResponseDTO> changed;
+        try {
+            changed = transactionTemplate.execute(status -> syncChunk(chunk, counts));
+        } catch (DataIntegrityViolationException e) {
+            // Otra sincronización registró al mismo tiempo un autor nuevo del bloque:
+            // al repetirlo, el autor ya está en la base y se reutiliza
+            log.warn("Retrying chunk of {} books after concurrent author insert", chunk.size());
+            counts.setInserted(0);
+            counts.setUpdated(0);
+            counts.setUnchanged(0);
+            changed = transactionTemplate.execute(status -> syncChunk(chunk, counts));
+        }
+        report.setInserted(report.getInserted() + counts.getInserted());
+        report.setUpdated(report.getUpdated() + counts.getUpdated());
+        report.setUnchanged(report.getUnchanged() + counts.getUnchanged());
+        catalogSnapshotService.putAll(changed);
+        onChunkCommitted.accept(report);
+    }
+    
+    private void awaitChunk(CompletableFuture<Void> chunk) {
+        try {
+            chunk.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Actualiza solo los libros indicados consultando la API externa libro por libro.
+     * Las consultas se hacen en paralelo (hasta catalog.refresh.concurrency a la vez), así
+     * que el tiempo total se acerca al de la consulta más lenta. Los resultados se guardan
+     * juntos en una sola transacción; los libros que fallan o cuya respuesta demora más de
+     * catalog.refresh.timeout se informan sin cancelar el resto.
+     */
+    public BookRefreshReportDTO refreshBooks(Collection<Long> externalIds) {
+        log.info("Refreshing {} books from external API", externalIds.size());
+        long start = System.nanoTime();
         
-        for (ExternalBookDTO externalBook : externalBooks) {
-            Book existingBook = bookRepository.findByExternalId(externalBook.getId())
-                    .orElse(null);
-            
-            if (existingBook == null) {
-                Book newBook = convertToBook(externalBook);
-                newBook.setStockQuantity(10); // Stock inicial por defecto
-                newBook.setAvailableQuantity(10);
-                bookRepository.save(newBook);
-                log.info("Created new book: {}", newBook.getTitle());
+        Map<Long, CompletableFuture<ExternalBookDTO>> calls = new LinkedHashMap<>();
+        for (Long externalId : new LinkedHashSet<>(externalIds)) {
+            // El tiempo de espera lo aplica el cliente HTTP a la llamada misma, que así libera
+            // su conexión; esperar un hilo o una conexión libre no lo consume
+            calls.put(externalId, CompletableFuture
+                    .supplyAsync(() -> externalBookService.fetchBookById(externalId), bookRefreshExecutor));
+        }
+        
+        List<ExternalBookDTO> fetched = new ArrayList<>();
+        Map<Long, String> failed = new LinkedHashMap<>();
+        calls.forEach((externalId, call) -> {
+            try {
+                ExternalBookDTO book = call.join();
+                if (book == null) {
+                    failed.put(externalId, "Libro no encontrado en la API externa");
+                } else {
+                    fetched.add(book);
+                }
+            } catch (CompletionException e) {
+                failed.put(externalId, e.getCause().getMessage());
+            }
+        });
+        
+        BookSyncReportDTO counts = new BookSyncReportDTO();
+        if (!fetched.isEmpty()) {
+            persistChunk(fetched, counts, report -> {});
+        }
+        
+        BookRefreshReportDTO report = new BookRefreshReportDTO(calls.size(), counts.getInserted(),
+                counts.getUpdated(), counts.getUnchanged(), failed,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        log.info("Refresh completed: {} inserted, {} updated, {} unchanged, {} failed in {} ms",
+                report.getInserted(), report.getUpdated(), report.getUnchanged(), failed.size(), report.getElapsedMillis());
+        return report;
+    }
+    
+    // Retorna los libros insertados o modificados del bloque, ya convertidos para el snapshot
+    private List<BookResponseDTO> syncChunk(List<ExternalBookDTO> chunk, BookSyncReportDTO report) {
+        List<Long> ids = chunk.stream().map(ExternalBookDTO::getId).toList();
+        Map<Long, String> knownHashes = new HashMap<>();
+        bookRepository.findContentHashesByExternalIdIn(ids)
+                .forEach(view -> knownHashes.put(view.getExternalId(), view.getContentHash()));
+        
+        // Los libros sin cambios se descartan comparando el hash: no se cargan ni se actualizan
+        Map<Long, ExternalBookDTO> toUpdate = new LinkedHashMap<>();
+        Map<Long, ExternalBookDTO> toInsert = new LinkedHashMap<>();
+        Map<Long, String> newHashes = new HashMap<>();
+        for (ExternalBookDTO externalBook : chunk) {
+            String hash = contentHash(externalBook);
+            newHashes.put(externalBook.getId(), hash);
+            if (!knownHashes.containsKey(externalBook.getId())) {
+                toInsert.put(externalBook.getId(), externalBook);
+            } else if (hash.equals(knownHashes.get(externalBook.getId()))) {
+                report.setUnchanged(report.getUnchanged() + 1);
             } else {
-                // Actualizar información del libro
-                updateBookFromExternal(existingBook, externalBook);
-                bookRepository.save(existingBook);
-                log.info("Updated book: {}", existingBook.getTitle());
+                toUpdate.put(externalBook.getId(), externalBook);
             }
         }
-        log.info("Synchronization completed");
+        
+        Map<String, Author> authors = resolveAuthors(toUpdate.values(), toInsert.values());
+        
+        List<Book> changed = new ArrayList<>();
+        if (!toUpdate.isEmpty()) {
+            // La entidad está administrada: el UPDATE se envía en lote al confirmar
+            for (Book book : bookRepository.findAllWithAuthorsByExternalIdIn(toUpdate.keySet())) {
+                updateBookFromExternal(book, toUpdate.get(book.getExternalId()), authors);
+                book.setContentHash(newHashes.get(book.getExternalId()));
+                changed.add(book);
+                log.debug("Updated book: {}", book.getTitle());
+            }
+            report.setUpdated(report.getUpdated() + toUpdate.size());
+        }
+        
+        List<Book> newBooks = new ArrayList<>();
+        for (ExternalBookDTO externalBook : toInsert.values()) {
+            Book newBook = convertToBook(externalBook, authors);
+            newBook.setStockQuantity(10); // Stock inicial por defecto
+            newBook.setAvailableQuantity(10);
+            newBook.setContentHash(newHashes.get(newBook.getExternalId()));
+            newBooks.add(newBook);
+            log.debug("Created new book: {}", newBook.getTitle());
+        }
+        bookRepository.saveAll(newBooks);
+        changed.addAll(newBooks);
+        report.setInserted(report.getInserted() + newBooks.size());
+        
+        return changed.stream().map(this::convertToDTO).toList();
+    }
+    
+    // Autores de los libros modificados del bloque: los conocidos se buscan en una sola
+    // consulta y los nuevos se insertan juntos al confirmar, una vez por nombre
+    private Map<String, Author> resolveAuthors(Collection<ExternalBookDTO> toUpdate, Collection<ExternalBookDTO> toInsert) {
+        Set<String> names = new LinkedHashSet<>();
+        for (Collection<ExternalBookDTO> books : List.of(toUpdate, toInsert)) {
+            for (ExternalBookDTO book : books) {
+                if (book.getAuthorName() != null) {
+                    book.getAuthorName().stream().filter(Objects::nonNull).forEach(names::add);
+                }
+            }
+        }
+        if (names.isEmpty()) {
+            return Map.of();
+        }
+        
+        Map<String, Author> authors = new HashMap<>();
+        authorRepository.findByNameIn(names).forEach(author -> authors.put(author.getName(), author));
+        List<Author> newAuthors = names.stream()
+                .filter(name -> !authors.containsKey(name))
+                .map(name -> new Author(null, name))
+                .toList();
+        authorRepository.saveAll(newAuthors).forEach(author -> authors.put(author.getName(), author));
+        return authors;
+    }
+    
+    /**
+     * Retorna el catálogo ya serializado. Solo la primera llamada (si el snapshot
+     * todavía no se cargó al iniciar) consulta la base.
+     */
+    public CatalogSnapshotService.Snapshot getCatalogSnapshot() {
+        if (!catalogSnapshotService.isLoaded()) {
+            catalogSnapshotService.loadIfAbsent(this::readCatalog);
+        }
+        return catalogSnapshotService.getSnapshot();
+    }
+    
+    // Recarga el snapshot y el índice de búsqueda; los cambios confirmados durante la lectura no se pierden
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadCatalogSnapshot() {
+        catalogSnapshotService.load(this::readCatalog);
+    }
+    
+    private List<BookResponseDTO> readCatalog() {
+        return transactionTemplate.execute(status -> bookRepository.findAllWithAuthors().stream()
+                .map(this::convertToDTO)
+                .toList());
+    }
+    
+    /**
+     * Busca libros por palabras del título o del autor, sin distinguir acentos ni
+     * mayúsculas y aceptando palabras incompletas. Los resultados salen del índice en
+     * memoria ordenados por relevancia, con los datos actuales del catálogo.
+     */
+    public List<BookResponseDTO> searchBooks(String query, Integer limit) {
+        if (query == null || query.isBlank()) {
+            throw new RuntimeException("Debe indicar un texto de búsqueda");
+        }
+        if (!catalogSnapshotService.isLoaded()) {
+            catalogSnapshotService.loadIfAbsent(this::readCatalog);
+        }
+        int resultLimit = limit == null ? DEFAULT_SEARCH_LIMIT : Math.max(1, Math.min(limit, MAX_SEARCH_LIMIT));
+        return catalogSnapshotService.getBooks(bookSearchService.search(query, resultLimit));
     }
     
     @Transactional(readOnly = true)
     public List<BookResponseDTO> getAllBooks() {
-        return bookRepository.findAll().stream()
+        return bookRepository.findAllWithAuthors().stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
@@ -61,73 +319,147 @@ public class BookService {
     
     @Transactional
     public BookResponseDTO updateStock(Long externalId, Integer stockQuantity) {
-        Book book = bookRepository.findByExternalId(externalId)
-                .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + externalId));
-        
-        int reserved = book.getStockQuantity() - book.getAvailableQuantity();
-        if (stockQuantity < reserved) {
+        // Suma la diferencia de stock a las disponibles en una sola sentencia condicional: las
+        // reservas y devoluciones confirmadas entre medio no se pisan
+        if (bookRepository.updateStockQuantity(externalId, stockQuantity) == 0) {
+            Book book = bookRepository.findByExternalId(externalId)
+                    .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + externalId));
+            int reserved = book.getStockQuantity() - book.getAvailableQuantity();
             throw new RuntimeException("No se puede reducir el stock por debajo de los libros reservados: " + reserved);
         }
         
-        book.setStockQuantity(stockQuantity);
-        book.setAvailableQuantity(stockQuantity - reserved);
-        bookRepository.save(book);
-        
-        return convertToDTO(book);
+        Book book = bookRepository.findByExternalId(externalId)
+                .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + externalId));
+        BookResponseDTO dto = convertToDTO(book);
+        afterCommit(() -> catalogSnapshotService.putAll(List.of(dto)));
+        return dto;
     }
     
     @Transactional
     public void decreaseAvailableQuantity(Long externalId) {
-        Book book = bookRepository.findByExternalId(externalId)
-                .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + externalId));
-        
-        if (book.getAvailableQuantity() <= 0) {
+        // Descuento condicional en una sola sentencia: sin carrera entre la lectura y la escritura
+        if (bookRepository.decrementAvailableQuantity(externalId) == 0) {
+            if (!bookRepository.existsByExternalId(externalId)) {
+                throw new RuntimeException("Libro no encontrado con ID externo: " + externalId);
+            }
             throw new RuntimeException("No hay libros disponibles para reservar");
         }
-        
-        book.setAvailableQuantity(book.getAvailableQuantity() - 1);
-        bookRepository.save(book);
+        afterCommit(() -> catalogSnapshotService.adjustAvailableQuantity(externalId, -1));
+    }
+    
+    /**
+     * Descuenta hasta {@code requested} copias de un libro y retorna cuántas se reservaron.
+     * Si otra transacción se llevó copias entre la lectura y el descuento, se vuelve a
+     * intentar con las que queden disponibles en ese momento.
+     */
+    @Transactional
+    public int reserveCopies(Long externalId, int requested) {
+        int quantity = requested;
+        for (int attempt = 0; attempt < RESERVE_COPIES_ATTEMPTS && quantity > 0; attempt++) {
+            if (bookRepository.decrementAvailableQuantityBy(externalId, quantity) > 0) {
+                int reserved = quantity;
+                afterCommit(() -> catalogSnapshotService.adjustAvailableQuantity(externalId, -reserved));
+                return reserved;
+            }
+            quantity = Math.min(quantity, bookRepository.findAvailableQuantityByExternalId(externalId).orElse(0));
+        }
+        return 0;
+    }
+    
+    // Repone varias copias de un libro en una sola actualización; false si superaría el stock
+    @Transactional
+    public boolean releaseCopies(Long externalId, int quantity) {
+        if (bookRepository.incrementAvailableQuantityBy(externalId, quantity) == 0) {
+            return false;
+        }
+        afterCommit(() -> catalogSnapshotService.adjustAvailableQuantity(externalId, quantity));
+        return true;
     }
     
     @Transactional
     public void increaseAvailableQuantity(Long externalId) {
-        Book book = bookRepository.findByExternalId(externalId)
-                .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + externalId));
-        
-        if (book.getAvailableQuantity() >= book.getStockQuantity()) {
+        if (bookRepository.incrementAvailableQuantity(externalId) == 0) {
+            if (!bookRepository.existsByExternalId(externalId)) {
+                throw new RuntimeException("Libro no encontrado con ID externo: " + externalId);
+            }
             throw new RuntimeException("La cantidad disponible no puede exceder el stock");
         }
-        
-        book.setAvailableQuantity(book.getAvailableQuantity() + 1);
-        bookRepository.save(book);
+        afterCommit(() -> catalogSnapshotService.adjustAvailableQuantity(externalId, 1));
     }
     
-    private Book convertToBook(ExternalBookDTO dto) {
+    // El snapshot del catálogo solo refleja cambios confirmados
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+    
+    private Book convertToBook(ExternalBookDTO dto, Map<String, Author> authors) {
         Book book = new Book();
         book.setExternalId(dto.getId());
         book.setTitle(dto.getTitle());
-        book.setAuthorName(dto.getAuthorName());
+        book.setAuthors(authorsOf(dto, authors));
         book.setFirstPublishYear(dto.getFirstPublishYear());
         book.setEditionCount(dto.getEditionCount());
         book.setHasFulltext(dto.getHasFulltext());
-        book.setPrice(dto.getPrice());
+        book.setPrice(toMoney(dto.getPrice()));
         return book;
     }
     
-    private void updateBookFromExternal(Book book, ExternalBookDTO dto) {
+    private void updateBookFromExternal(Book book, ExternalBookDTO dto, Map<String, Author> authors) {
         book.setTitle(dto.getTitle());
-        book.setAuthorName(dto.getAuthorName());
+        // Se modifica la lista administrada: Hibernate solo reescribe las posiciones que cambian
+        book.getAuthors().clear();
+        book.getAuthors().addAll(authorsOf(dto, authors));
         book.setFirstPublishYear(dto.getFirstPublishYear());
         book.setEditionCount(dto.getEditionCount());
         book.setHasFulltext(dto.getHasFulltext());
-        book.setPrice(dto.getPrice());
+        book.setPrice(toMoney(dto.getPrice()));
+    }
+    
+    private List<Author> authorsOf(ExternalBookDTO dto, Map<String, Author> authors) {
+        if (dto.getAuthorName() == null) {
+            return new ArrayList<>();
+        }
+        return dto.getAuthorName().stream()
+                .filter(Objects::nonNull)
+                .map(authors::get)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+    
+    private Money toMoney(BigDecimal price) {
+        return price != null ? Money.of(price) : null;
+    }
+    
+    // Hash de los datos que vienen de la API externa; si no cambia, el libro no se toca
+    static String contentHash(ExternalBookDTO dto) {
+        String content = String.join("\u001F",
+                String.valueOf(dto.getTitle()),
+                dto.getAuthorName() != null ? String.join("\u001E", dto.getAuthorName()) : "",
+                String.valueOf(dto.getFirstPublishYear()),
+                String.valueOf(dto.getEditionCount()),
+                String.valueOf(dto.getHasFulltext()),
+                dto.getPrice() != null ? dto.getPrice().stripTrailingZeros().toPlainString() : "");
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
     }
     
-    private BookResponseDTO convertToDTO(Book book) {
+    BookResponseDTO convertToDTO(Book book) {
         BookResponseDTO dto = new BookResponseDTO();
         dto.setExternalId(book.getExternalId());
         dto.setTitle(book.getTitle());
-        dto.setAuthorName(book.getAuthorName());
+        dto.setAuthorName(book.getAuthors().stream().map(Author::getName).toList());
         dto.setFirstPublishYear(book.getFirstPublishYear());
         dto.setEditionCount(book.getEditionCount());
         dto.setHasFulltext(book.getHasFulltext());
@@ -0,0 +1,217 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.BookResponseDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Mantiene el catálogo de libros ya serializado a JSON para servir GET /api/books
+ * sin consultar la base ni volver a serializar en cada pedido.
+ * Cada libro se guarda como un fragmento JSON; ante un cambio solo se vuelve a
+ * serializar el libro afectado y el arreglo completo se arma en el siguiente pedido.
+ * Los cambios también se pasan al índice de búsqueda en el mismo orden en que se aplican.
+ * Los libros se guardan y se retornan como copias: quien los recibe puede serializarlos
+ * sin tomar el bloqueo del servicio.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogSnapshotService {
+
+    private final ObjectMapper objectMapper;
+    private final BookSearchService bookSearchService;
+
+    // Distingue las versiones de distintas ejecuciones de la aplicación en el ETag
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private final NavigableMap<Long, BookResponseDTO> books = new TreeMap<>();
+    private final NavigableMap<Long, byte[]> fragments = new TreeMap<>();
+    private long version;
+    private volatile boolean loaded;
+    private volatile Snapshot current;
+
+    // Una sola carga a la vez; mientras se lee la base los cambios confirmados se guardan en
+    // pending y se vuelven a aplicar sobre lo leído (pending es null si no hay carga en curso)
+    private final Object loadLock = new Object();
+    private List<Runnable> pending;
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public Snapshot getSnapshot() {
+        Snapshot snapshot = current;
+        return snapshot != null ? snapshot : assemble();
+    }
+
+    // Libros del catálogo en el orden de los IDs recibidos; los que no existen se omiten
+    public synchronized List<BookResponseDTO> getBooks(List<Long> externalIds) {
+        List<BookResponseDTO> result = new ArrayList<>(externalIds.size());
+        for (Long externalId : externalIds) {
+            BookResponseDTO book = books.get(externalId);
+            if (book != null) {
+                result.add(copyOf(book));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reemplaza el catálogo con lo que lee {@code reader} de la base. Los cambios que se
+     * confirman mientras dura la lectura (descuentos de stock, bloques de una sincronización)
+     * se guardan y se aplican después sobre el catálogo leído, para que no se pierdan.
+     */
+    public void load(Supplier<? extends Collection<BookResponseDTO>> reader) {
+        synchronized (loadLock) {
+            synchronized (this) {
+                pending = new ArrayList<>();
+            }
+            Collection<BookResponseDTO> catalog;
+            try {
+                catalog = reader.get();
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    pending = null;
+                }
+                throw e;
+            }
+            synchronized (this) {
+                List<Runnable> changes = pending;
+                pending = null;
+                replaceAll(catalog);
+                changes.forEach(Runnable::run);
+                if (!changes.isEmpty()) {
+                    log.info("Applied {} catalog changes committed while the snapshot was loading", changes.size());
+                }
+            }
+        }
+    }
+
+    // Carga el catálogo solo si todavía no se cargó; los pedidos simultáneos esperan la misma carga
+    public void loadIfAbsent(Supplier<? extends Collection<BookResponseDTO>> reader) {
+        if (loaded) {
+            return;
+        }
+        synchronized (loadLock) {
+            if (!loaded) {
+                load(reader);
+            }
+        }
+    }
+
+    public synchronized void replaceAll(Collection<BookResponseDTO> catalog) {
+        books.clear();
+        fragments.clear();
+        catalog.forEach(book -> store(copyOf(book)));
+        loaded = true;
+        publishChange();
+        bookSearchService.replaceAll(books.values());
+        log.info("Catalog snapshot rebuilt with {} books (version {})", books.size(), version);
+    }
+
+    // Antes de la primera carga se ignoran: la carga lee de la base lo ya confirmado
+    public synchronized void putAll(Collection<BookResponseDTO> changed) {
+        if (changed.isEmpty()) {
+            return;
+        }
+        List<BookResponseDTO> copies = changed.stream().map(CatalogSnapshotService::copyOf).toList();
+        if (pending != null) {
+            pending.add(() -> applyPut(copies));
+        }
+        if (loaded) {
+            applyPut(copies);
+        }
+    }
+
+    public synchronized void adjustAvailableQuantity(Long externalId, int delta) {
+        if (pending != null) {
+            pending.add(() -> applyAdjustment(externalId, delta));
+        }
+        if (loaded) {
+            applyAdjustment(externalId, delta);
+        }
+    }
+
+    private void applyPut(List<BookResponseDTO> copies) {
+        copies.forEach(this::store);
+        publishChange();
+        bookSearchService.putAll(copies);
+    }
+
+    // El libro guardado no se modifica: puede estar serializándose fuera del bloqueo
+    private void applyAdjustment(Long externalId, int delta) {
+        BookResponseDTO book = books.get(externalId);
+        if (book == null) {
+            return;
+        }
+        BookResponseDTO adjusted = copyOf(book);
+        adjusted.setAvailableQuantity(book.getAvailableQuantity() + delta);
+        store(adjusted);
+        publishChange();
+    }
+
+    private static BookResponseDTO copyOf(BookResponseDTO book) {
+        return new BookResponseDTO(book.getExternalId(), book.getTitle(),
+                book.getAuthorName() == null ? null : new ArrayList<>(book.getAuthorName()),
+                book.getFirstPublishYear(), book.getEditionCount(), book.getHasFulltext(),
+                book.getPrice(), book.getStockQuantity(), book.getAvailableQuantity());
+    }
+
+    private void store(BookResponseDTO book) {
+        try {
+            books.put(book.getExternalId(), book);
+            fragments.put(book.getExternalId(), objectMapper.writeValueAsBytes(book));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Error al serializar el libro " + book.getExternalId(), e);
+        }
+    }
+
+    // Invalida el arreglo armado; se vuelve a concatenar en el próximo pedido
+    private void publishChange() {
+        version++;
+        current = null;
+    }
+
+    private synchronized Snapshot assemble() {
+        if (current != null) {
+            return current;
+        }
+        int size = 2 + Math.max(0, fragments.size() - 1);
+        for (byte[] fragment : fragments.values()) {
+            size += fragment.length;
+        }
+        ByteArrayOutputStream json = new ByteArrayOutputStream(size);
+        json.write('[');
+        boolean first = true;
+        for (byte[] fragment : fragments.values()) {
+            if (!first) {
+                json.write(',');
+            }
+            json.writeBytes(fragment);
+            first = false;
+        }
+        json.write(']');
+        current = new Snapshot(version, "\"" + epoch + "-" + version + "\"", json.toByteArray());
+        return current;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Snapshot {
+        private final long version;
+        private final String etag;
+        private final byte[] json;
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.libreria.service;
+
+import com.example.libreria.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * Filtro de Bloom con los emails de los usuarios, para responder sin consultar la base
+ * que un email todavía no está registrado. Si el filtro dice que no, el email seguro está
+ * libre; si dice que tal vez, se confirma con la base. Los emails se comparan en minúsculas
+ * y sin espacios: un falso positivo solo cuesta la consulta que se hacía siempre.
+ * <p>
+ * Un filtro de Bloom no permite quitar elementos: los emails borrados o reemplazados quedan
+ * como falsos positivos hasta que el filtro se vuelve a cargar desde la base, lo que pasa al
+ * llenarse o cuando los emails obsoletos superan la mitad de su capacidad. La restricción única de
+ * users.email sigue siendo la que decide ante dos altas simultáneas del mismo email.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EmailFilterService {
+    
+    static final double FALSE_POSITIVE_RATE = 0.01;
+    static final int MIN_CAPACITY = 1024;
+    
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    
+    // null hasta la primera carga: mientras tanto todo se consulta en la base
+    private volatile BloomFilter filter;
+    private final AtomicInteger stale = new AtomicInteger();
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        reload();
+    }
+    
+    public synchronized void reload() {
+        long userCount = userRepository.count();
+        // Lugar para el doble de los usuarios actuales antes de volver a cargar
+        BloomFilter loaded = new BloomFilter((int) Math.max(MIN_CAPACITY, Math.min(Integer.MAX_VALUE / 2, userCount * 2)),
+                FALSE_POSITIVE_RATE);
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<String> emails = userRepository.streamAllEmails()) {
+                emails.forEach(email -> loaded.add(normalize(email)));
+            }
+        });
+        filter = loaded;
+        stale.set(0);
+        log.info("Email filter loaded with {} users ({} KB)", loaded.count(), loaded.sizeInBytes() / 1024);
+    }
+    
+    // false solo si el email seguro no está registrado
+    public boolean mightExist(String email) {
+        BloomFilter current = filter;
+        return current == null || current.mightContain(normalize(email));
+    }
+    
+    public void add(String email) {
+        BloomFilter current = filter;
+        if (current == null) {
+            return;
+        }
+        current.add(normalize(email));
+        if (current.count() >= current.capacity()) {
+            reload();
+        }
+    }
+    
+    // Un email borrado o reemplazado sigue en el filtro; solo se cuenta para saber cuándo
+    // conviene recargarlo
+    public void markStale() {
+        BloomFilter current = filter;
+        if (current != null && stale.incrementAndGet() > current.capacity() / 2) {
+            reload();
+        }
+    }
+    
+    static String normalize(String email) {
+        return email.strip().toLowerCase(Locale.ROOT);
+    }
+    
+    // Bits en un AtomicLongArray para agregar sin bloquear desde varios hilos.
+    // Las k posiciones salen de dos hashes combinados (h1 + i × h2)
+    static final class BloomFilter {
+        private final AtomicLongArray bits;
+        private final long bitCount;
+        private final int hashCount;
+        private final int capacity;
+        private final AtomicInteger count = new AtomicInteger();
+        
+        BloomFilter(int capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            // m = -n ln p / (ln 2)², k = m / n × ln 2
+            long bitsNeeded = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.bits = new AtomicLongArray((int) ((bitsNeeded + 63) / 64));
+            this.bitCount = bits.length() * 64L;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * Math.log(2)));
+        }
+        
+        void add(String value) {
+            long hash = hash(value);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+                long mask = 1L << bit;
+                bits.getAndAccumulate((int) (bit >>> 6), mask, (word, m) -> word | m);
+            }
+            count.incrementAndGet();
+        }
+        
+        boolean mightContain(String value) {
+            long hash = hash(value);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        int count() {
+            return count.get();
+        }
+        
+        int capacity() {
+            return capacity;
+        }
+        
+        long sizeInBytes() {
+            return bits.length() * 8L;
+        }
+        
+        // FNV-1a de 64 bits con la mezcla final de MurmurHash3 para repartir mejor los bits
+        private static long hash(String value) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < value.length(); i++) {
+                hash ^= value.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
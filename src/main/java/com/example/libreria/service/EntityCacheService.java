@@ -0,0 +1,46 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.EntityCacheStatsDTO;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Estado de la caché de segundo nivel de Hibernate (regiones books y users). Cada acierto
+ * es una lectura por ID que no llegó a la base.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EntityCacheService {
+    
+    private final EntityManagerFactory entityManagerFactory;
+    
+    // Aciertos, fallos y cargas por región desde que arrancó la aplicación
+    public List<EntityCacheStatsDTO> getStats() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        return Arrays.stream(statistics.getSecondLevelCacheRegionNames())
+                .sorted()
+                .map(region -> {
+                    CacheRegionStatistics regionStatistics = statistics.getDomainDataRegionStatistics(region);
+                    long hits = regionStatistics.getHitCount();
+                    long misses = regionStatistics.getMissCount();
+                    return new EntityCacheStatsDTO(region, hits, misses, regionStatistics.getPutCount(),
+                            hits + misses == 0 ? 0 : (double) hits / (hits + misses));
+                })
+                .toList();
+    }
+    
+    // Para cuando se cambian libros o usuarios directo en la base, sin pasar por la aplicación
+    public void evictAll() {
+        entityManagerFactory.getCache().evictAll();
+        log.info("Second-level cache evicted");
+    }
+}
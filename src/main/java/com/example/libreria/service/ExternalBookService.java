@@ -1,58 +1,134 @@
 package com.example.libreria.service;
 
 import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.dto.ExternalCatalogDTO;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
-import java.util.Collections;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 @Slf4j
 public class ExternalBookService {
     
     private final RestTemplate restTemplate;
+    // Con el tiempo de espera de catalog.refresh.timeout, para las consultas libro por libro
+    private final RestTemplate bookRefreshRestTemplate;
+    private final ObjectMapper objectMapper;
     
     @Value("${external.api.books.url}")
     private String externalApiUrl;
     
-    public ExternalBookService(RestTemplate restTemplate) {
+    // Validadores de la última sincronización completada (ETag / Last-Modified)
+    private volatile String lastEtag;
+    private volatile String lastModified;
+    
+    public ExternalBookService(RestTemplate restTemplate,
+                               @Qualifier("bookRefreshRestTemplate") RestTemplate bookRefreshRestTemplate,
+                               ObjectMapper objectMapper) {
         this.restTemplate = restTemplate;
+        this.bookRefreshRestTemplate = bookRefreshRestTemplate;
+        this.objectMapper = objectMapper;
     }
     
-    public List<ExternalBookDTO> fetchAllBooks() {
+    /**
+     * Descarga el catálogo solo si cambió desde la última sincronización completada
+     * (envía If-None-Match / If-Modified-Since; ante un 304 no transfiere nada).
+     * La respuesta se parsea a medida que llega y se entrega en bloques de chunkSize
+     * libros, así la memoria depende del tamaño del bloque y no del catálogo.
+     */
+    public ExternalCatalogDTO streamCatalogIfModified(int chunkSize, Consumer<List<ExternalBookDTO>> chunkConsumer) {
         try {
             log.info("Fetching books from external API: {}", externalApiUrl);
-            ResponseEntity<List<ExternalBookDTO>> response = restTemplate.exchange(
-                    externalApiUrl,
-                    HttpMethod.GET,
-                    null,
-                    new ParameterizedTypeReference<List<ExternalBookDTO>>() {}
-            );
+            ExternalCatalogDTO catalog = restTemplate.execute(externalApiUrl, HttpMethod.GET,
+                    request -> addValidators(request.getHeaders()),
+                    response -> {
+                        if (response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+                            return ExternalCatalogDTO.notModified();
+                        }
+                        int count = readInChunks(response.getBody(), chunkSize, chunkConsumer);
+                        return new ExternalCatalogDTO(false, count,
+                                response.getHeaders().getETag(),
+                                response.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED));
+                    });
             
-            List<ExternalBookDTO> books = response.getBody();
-            log.info("Successfully fetched {} books from external API", books != null ? books.size() : 0);
-            return books != null ? books : Collections.emptyList();
+            if (catalog.isNotModified()) {
+                log.info("External catalog not modified since last synchronization");
+            } else {
+                log.info("Successfully fetched {} books from external API", catalog.getBookCount());
+            }
+            return catalog;
         } catch (RestClientException e) {
             log.error("Error fetching books from external API: {}", e.getMessage(), e);
             throw new RuntimeException("Error al obtener libros de la API externa: " + e.getMessage(), e);
         }
     }
     
+    private void addValidators(HttpHeaders headers) {
+        if (lastEtag != null) {
+            headers.setIfNoneMatch(lastEtag);
+        }
+        if (lastModified != null) {
+            headers.set(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+        }
+    }
+    
+    // Recorre el arreglo JSON token a token, deserializando un libro a la vez
+    private int readInChunks(InputStream body, int chunkSize, Consumer<List<ExternalBookDTO>> chunkConsumer) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("La API externa no devolvió un arreglo de libros");
+            }
+            int count = 0;
+            List<ExternalBookDTO> chunk = new ArrayList<>(chunkSize);
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                chunk.add(objectMapper.readValue(parser, ExternalBookDTO.class));
+                count++;
+                if (chunk.size() == chunkSize) {
+                    chunkConsumer.accept(chunk);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                chunkConsumer.accept(chunk);
+            }
+            return count;
+        }
+    }
+    
+    // Se llama recién cuando la sincronización terminó bien, para no saltear un catálogo a medio guardar
+    public void rememberValidators(ExternalCatalogDTO catalog) {
+        lastEtag = catalog.getEtag();
+        lastModified = catalog.getLastModified();
+    }
+    
     public ExternalBookDTO fetchBookById(Long id) {
         try {
             log.info("Fetching book with id {} from external API", id);
             String url = externalApiUrl + "/" + id;
-            ExternalBookDTO book = restTemplate.getForObject(url, ExternalBookDTO.class);
+            ExternalBookDTO book = bookRefreshRestTemplate.getForObject(url, ExternalBookDTO.class);
             log.info("Successfully fetched book: {}", book != null ? book.getTitle() : "null");
             return book;
         } catch (RestClientException e) {
+            if (e.getCause() instanceof SocketTimeoutException) {
+                log.warn("Timed out fetching book {} from external API: {}", id, e.getMessage());
+                throw new RuntimeException("Tiempo de espera agotado al obtener el libro de la API externa", e);
+            }
             log.error("Error fetching book {} from external API: {}", id, e.getMessage(), e);
             throw new RuntimeException("Error al obtener el libro de la API externa: " + e.getMessage(), e);
         }
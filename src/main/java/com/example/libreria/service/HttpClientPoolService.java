@@ -0,0 +1,25 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.HttpPoolStatsDTO;
+import lombok.RequiredArgsConstructor;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.core5.pool.PoolStats;
+import org.springframework.stereotype.Service;
+
+@Service
+@RequiredArgsConstructor
+public class HttpClientPoolService {
+    
+    private final PoolingHttpClientConnectionManager externalApiConnectionManager;
+    
+    public HttpPoolStatsDTO getPoolStats() {
+        PoolStats totals = externalApiConnectionManager.getTotalStats();
+        return new HttpPoolStatsDTO(
+                externalApiConnectionManager.getMaxTotal(),
+                externalApiConnectionManager.getDefaultMaxPerRoute(),
+                totals.getLeased(),
+                totals.getAvailable(),
+                totals.getPending(),
+                externalApiConnectionManager.getRoutes().size());
+    }
+}
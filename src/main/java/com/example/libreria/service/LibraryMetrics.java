@@ -0,0 +1,106 @@
+package com.example.libreria.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Métricas del dominio de la biblioteca. Los contadores de reservas creadas y devueltas
+ * se incrementan al confirmar la transacción; los rechazos por falta de stock, en el momento,
+ * porque la transacción que rechaza casi siempre termina en rollback. Los gauges muestran
+ * valores leídos de la base cada metrics.library.gauge-refresh: leer /actuator/prometheus
+ * no ejecuta consultas.
+ */
+@Component
+@Slf4j
+public class LibraryMetrics {
+    
+    private static final String SELECT_GAUGES =
+            "SELECT (SELECT COALESCE(SUM(available_quantity), 0) FROM books), " +
+            "(SELECT COUNT(*) FROM reservations WHERE status = 'ACTIVE' AND actual_return_date IS NULL), " +
+            "(SELECT COUNT(*) FROM reservations WHERE status = 'OVERDUE' AND actual_return_date IS NULL)";
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    private final Counter reservationsCreated;
+    private final Counter reservationsReturned;
+    private final Counter reservationsRejectedNoStock;
+    
+    private final AtomicLong availableCopies = new AtomicLong();
+    private final AtomicLong activeReservations = new AtomicLong();
+    private final AtomicLong overdueReservations = new AtomicLong();
+    
+    public LibraryMetrics(MeterRegistry registry, JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Un solo contador con el evento como tag: Prometheus reserva el sufijo _created
+        reservationsCreated = reservationCounter(registry, "created");
+        reservationsReturned = reservationCounter(registry, "returned");
+        reservationsRejectedNoStock = reservationCounter(registry, "rejected_no_stock");
+        Gauge.builder("library.books.available.copies", availableCopies, AtomicLong::get)
+                .description("Copias disponibles en todo el catálogo")
+                .register(registry);
+        Gauge.builder("library.reservations.open", activeReservations, AtomicLong::get)
+                .description("Reservas sin devolver")
+                .tag("status", "active")
+                .register(registry);
+        Gauge.builder("library.reservations.open", overdueReservations, AtomicLong::get)
+                .description("Reservas sin devolver")
+                .tag("status", "overdue")
+                .register(registry);
+    }
+    
+    private static Counter reservationCounter(MeterRegistry registry, String event) {
+        return Counter.builder("library.reservations")
+                .description("Reservas creadas, devueltas y rechazadas por falta de stock")
+                .tag("event", event)
+                .register(registry);
+    }
+    
+    public void reservationsCreated(int count) {
+        afterCommit(() -> reservationsCreated.increment(count));
+    }
+    
+    public void reservationsReturned(int count) {
+        afterCommit(() -> reservationsReturned.increment(count));
+    }
+    
+    public void reservationsRejectedForNoStock(int count) {
+        if (count > 0) {
+            reservationsRejectedNoStock.increment(count);
+        }
+    }
+    
+    // Una sola consulta para los tres gauges. Una devolución tardía queda en OVERDUE con fecha
+    // de devolución: solo cuentan las reservas sin devolver, igual que el barrido de vencidas
+    @Scheduled(fixedDelayString = "${metrics.library.gauge-refresh:30s}")
+    public void refreshGauges() {
+        jdbcTemplate.query(SELECT_GAUGES, rs -> {
+            availableCopies.set(rs.getLong(1));
+            activeReservations.set(rs.getLong(2));
+            overdueReservations.set(rs.getLong(3));
+        });
+        log.debug("Library gauges refreshed: {} available copies, {} active and {} overdue reservations",
+                availableCopies.get(), activeReservations.get(), overdueReservations.get());
+    }
+    
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.OverdueSweepReportDTO;
+import com.example.libreria.repository.ReservationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Barrido diario de reservas vencidas: pasa a OVERDUE las reservas abiertas cuya fecha
+ * de devolución ya pasó y actualiza su multa acumulada. Trabaja con UPDATE por rangos
+ * de IDs, cada uno en su propia transacción, para no bloquear la tabla completa.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OverdueSweepService {
+    
+    private static final BigDecimal LATE_FEE_RATE = BigDecimal.valueOf(ReservationService.LATE_FEE_PERCENTAGE, 2);
+    
+    private final ReservationRepository reservationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    
+    @Value("${reservations.overdue-sweep.chunk-size:1000}")
+    private int chunkSize;
+    
+    // Al arrancar, por si la aplicación estuvo detenida a la hora del barrido
+    @EventListener(ApplicationReadyEvent.class)
+    public void sweepOnStartup() {
+        sweep();
+    }
+    
+    @Scheduled(cron = "${reservations.overdue-sweep.cron:0 5 0 * * *}")
+    public void scheduledSweep() {
+        sweep();
+    }
+    
+    public OverdueSweepReportDTO sweep() {
+        long start = System.nanoTime();
+        LocalDate today = LocalDate.now(clock);
+        ReservationRepository.IdRange range = reservationRepository.findOverdueIdRange(today);
+        
+        int updated = 0;
+        int chunks = 0;
+        if (range.getMinId() != null) {
+            for (long fromId = range.getMinId() - 1; fromId < range.getMaxId(); fromId += chunkSize) {
+                long chunkFrom = fromId;
+                long chunkTo = fromId + chunkSize;
+                Integer rows = transactionTemplate.execute(status ->
+                        reservationRepository.markOverdue(today, LATE_FEE_RATE, chunkFrom, chunkTo));
+                updated += rows != null ? rows : 0;
+                chunks++;
+            }
+        }
+        
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("Overdue sweep as of {}: {} reservations updated in {} chunks ({} ms)", today, updated, chunks, elapsedMillis);
+        return new OverdueSweepReportDTO(today, updated, chunks, elapsedMillis);
+    }
+}
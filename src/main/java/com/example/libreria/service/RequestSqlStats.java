@@ -0,0 +1,56 @@
+package com.example.libreria.service;
+
+/**
+ * Sentencias SQL, tiempo JDBC y entidades cargadas por el pedido HTTP en curso. Se guarda en
+ * el hilo que atiende el pedido: lo que corre en otros hilos (sincronización del catálogo,
+ * reconstrucción de estadísticas, tareas programadas) no se cuenta.
+ */
+public class RequestSqlStats {
+    
+    private static final ThreadLocal<RequestSqlStats> CURRENT = new ThreadLocal<>();
+    
+    private int statements;
+    private long jdbcNanos;
+    private int entitiesLoaded;
+    private long startedAt;
+    
+    public static RequestSqlStats start() {
+        RequestSqlStats stats = new RequestSqlStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+    
+    public static RequestSqlStats current() {
+        return CURRENT.get();
+    }
+    
+    public static void clear() {
+        CURRENT.remove();
+    }
+    
+    public void beforeStatement() {
+        startedAt = System.nanoTime();
+    }
+    
+    // Un lote JDBC cuenta como una sola sentencia
+    public void afterStatement() {
+        statements++;
+        jdbcNanos += System.nanoTime() - startedAt;
+    }
+    
+    public void entityLoaded() {
+        entitiesLoaded++;
+    }
+    
+    public int getStatements() {
+        return statements;
+    }
+    
+    public long getJdbcNanos() {
+        return jdbcNanos;
+    }
+    
+    public int getEntitiesLoaded() {
+        return entitiesLoaded;
+    }
+}
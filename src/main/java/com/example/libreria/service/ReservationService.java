@@ -1,50 +1,160 @@
 package com.example.libreria.service;
 
+import com.example.libreria.dto.ReservationBatchItemDTO;
+import com.example.libreria.dto.ReservationBatchResponseDTO;
+import com.example.libreria.dto.ReservationPageDTO;
 import com.example.libreria.dto.ReservationRequestDTO;
 import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.dto.ReturnBatchItemRequestDTO;
+import com.example.libreria.dto.ReturnBatchResponseDTO;
 import com.example.libreria.dto.ReturnBookRequestDTO;
 import com.example.libreria.model.Book;
+import com.example.libreria.model.Money;
 import com.example.libreria.model.Reservation;
 import com.example.libreria.model.User;
 import com.example.libreria.repository.BookRepository;
 import com.example.libreria.repository.ReservationRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
+@Timed(value = "library.service", description = "Métodos públicos de los servicios del dominio")
 public class ReservationService {
     
-    private static final BigDecimal LATE_FEE_PERCENTAGE = new BigDecimal("0.15"); // 15% por día
+    static final long LATE_FEE_PERCENTAGE = 15; // 15% por día
+    
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 200;
     
     private final ReservationRepository reservationRepository;
     private final BookRepository bookRepository;
     private final BookService bookService;
     private final UserService userService;
+    private final RevenueAnalyticsService revenueAnalyticsService;
+    private final LibraryMetrics libraryMetrics;
     
     @Transactional
     public ReservationResponseDTO createReservation(ReservationRequestDTO requestDTO) {
-        // Validar que el usuario existe
+        // Validar que el usuario existe (por ID: sale de la caché de segundo nivel)
         User user = userService.getUserEntity(requestDTO.getUserId());
         
-        // Validar que el libro existe y está disponible
-        Book book = bookRepository.findByExternalId(requestDTO.getBookExternalId())
+        // Validar que el libro existe; el ID externo es la clave, así que también sale de la caché.
+        // La cantidad disponible de la entidad cacheada puede estar vieja y no se usa para decidir
+        Book book = bookRepository.findById(requestDTO.getBookExternalId())
                 .orElseThrow(() -> new RuntimeException("Libro no encontrado con ID externo: " + requestDTO.getBookExternalId()));
         
-        if (book.getAvailableQuantity() <= 0) {
-            throw new RuntimeException("No hay copias disponibles del libro: " + book.getTitle());
+        // Reducir la cantidad disponible con una actualización condicional:
+        // si no quedan copias (o otra reserva se llevó la última), falla sin sobrevender.
+        // El libro se acaba de leer: si falla es porque no quedan copias
+        try {
+            bookService.decreaseAvailableQuantity(book.getExternalId());
+        } catch (RuntimeException e) {
+            libraryMetrics.reservationsRejectedForNoStock(1);
+            throw new RuntimeException("No hay copias disponibles del libro: " + book.getTitle(), e);
         }
         
         // Crear la reserva
+        Reservation savedReservation = reservationRepository.save(newReservation(requestDTO, user, book));
+        revenueAnalyticsService.recordReservations(List.of(savedReservation));
+        libraryMetrics.reservationsCreated(1);
+        
+        log.info("Created reservation with id: {} for user: {} and book: {}", 
+                savedReservation.getId(), user.getName(), book.getTitle());
+        
+        return convertToDTO(savedReservation);
+    }
+    
+    /**
+     * Crea varias reservas en una sola transacción. Usuarios y libros se leen con una
+     * consulta cada uno, el stock se descuenta con una actualización por libro y las
+     * reservas se insertan en lotes JDBC. Las reservas que no se pueden crear (usuario o
+     * libro inexistente, sin copias) se informan como fallidas sin afectar al resto.
+     */
+    @Transactional
+    public ReservationBatchResponseDTO createReservations(List<ReservationRequestDTO> requests) {
+        long start = System.nanoTime();
+        Map<Long, User> users = userService.getUserEntities(requests.stream()
+                .map(ReservationRequestDTO::getUserId)
+                .collect(Collectors.toSet()));
+        Map<Long, Book> books = bookRepository.findAllById(requests.stream()
+                        .map(ReservationRequestDTO::getBookExternalId)
+                        .collect(Collectors.toSet())).stream()
+                .collect(Collectors.toMap(Book::getExternalId, Function.identity()));
+        
+        ReservationBatchItemDTO[] results = new ReservationBatchItemDTO[requests.size()];
+        // Posiciones del pedido agrupadas por libro, en orden de llegada dentro de cada libro.
+        // Los libros se recorren por ID, el mismo orden que las devoluciones en lote: dos lotes
+        // con los mismos libros bloquean sus filas en el mismo orden y no se traban entre sí
+        Map<Long, List<Integer>> indexesByBook = new TreeMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            ReservationRequestDTO request = requests.get(i);
+            if (!users.containsKey(request.getUserId())) {
+                results[i] = failure(i, "Usuario no encontrado con ID: " + request.getUserId());
+            } else if (!books.containsKey(request.getBookExternalId())) {
+                results[i] = failure(i, "Libro no encontrado con ID externo: " + request.getBookExternalId());
+            } else {
+                indexesByBook.computeIfAbsent(request.getBookExternalId(), id -> new ArrayList<>()).add(i);
+            }
+        }
+        
+        List<Reservation> reservations = new ArrayList<>();
+        List<Integer> reservationIndexes = new ArrayList<>();
+        indexesByBook.forEach((externalId, indexes) -> {
+            Book book = books.get(externalId);
+            // Un solo descuento por libro; si no alcanzan las copias se atienden las primeras del pedido.
+            // Se piden todas: la cantidad disponible la decide la base, no la entidad leída
+            int reserved = bookService.reserveCopies(externalId, indexes.size());
+            libraryMetrics.reservationsRejectedForNoStock(indexes.size() - reserved);
+            for (int j = 0; j < indexes.size(); j++) {
+                int index = indexes.get(j);
+                if (j < reserved) {
+                    ReservationRequestDTO request = requests.get(index);
+                    reservations.add(newReservation(request, users.get(request.getUserId()), book));
+                    reservationIndexes.add(index);
+                } else {
+                    results[index] = failure(index, "No hay copias disponibles del libro: " + book.getTitle());
+                }
+            }
+        });
+        
+        List<Reservation> saved = reservationRepository.saveAll(reservations);
+        revenueAnalyticsService.recordReservations(saved);
+        libraryMetrics.reservationsCreated(saved.size());
+        for (int k = 0; k < saved.size(); k++) {
+            int index = reservationIndexes.get(k);
+            results[index] = new ReservationBatchItemDTO(index, true, convertToDTO(saved.get(k)), null);
+        }
+        
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("Created {} of {} reservations in batch in {} ms", saved.size(), requests.size(), elapsedMillis);
+        return new ReservationBatchResponseDTO(requests.size(), saved.size(), requests.size() - saved.size(),
+                Arrays.asList(results), elapsedMillis);
+    }
+    
+    private ReservationBatchItemDTO failure(int index, String error) {
+        return new ReservationBatchItemDTO(index, false, null, error);
+    }
+    
+    private Reservation newReservation(ReservationRequestDTO requestDTO, User user, Book book) {
         Reservation reservation = new Reservation();
         reservation.setUser(user);
         reservation.setBook(book);
@@ -52,44 +162,26 @@ public class ReservationService {
         reservation.setStartDate(requestDTO.getStartDate());
         reservation.setExpectedReturnDate(requestDTO.getStartDate().plusDays(requestDTO.getRentalDays()));
         reservation.setDailyRate(book.getPrice());
-        reservation.setTotalFee(calculateTotalFee(book.getPrice(), requestDTO.getRentalDays()));
-        reservation.setLateFee(BigDecimal.ZERO);
+        reservation.setTotalFee(Money.ofCents(calculateTotalFee(book.getPrice().getCents(), requestDTO.getRentalDays())));
+        reservation.setLateFee(Money.ZERO);
         reservation.setStatus(Reservation.ReservationStatus.ACTIVE);
-        
-        Reservation savedReservation = reservationRepository.save(reservation);
-        
-        // Reducir la cantidad disponible
-        bookService.decreaseAvailableQuantity(book.getExternalId());
-        
-        log.info("Created reservation with id: {} for user: {} and book: {}", 
-                savedReservation.getId(), user.getName(), book.getTitle());
-        
-        return convertToDTO(savedReservation);
+        return reservation;
     }
     
     @Transactional
     public ReservationResponseDTO returnBook(Long reservationId, ReturnBookRequestDTO returnRequest) {
-        Reservation reservation = reservationRepository.findById(reservationId)
+        // La reserva queda bloqueada: el estado leído es el que se va a escribir
+        Reservation reservation = reservationRepository.findForReturnById(reservationId)
                 .orElseThrow(() -> new RuntimeException("Reserva no encontrada con ID: " + reservationId));
         
-        if (reservation.getStatus() != Reservation.ReservationStatus.ACTIVE) {
+        if (!reservation.isOpen()) {
             throw new RuntimeException("La reserva ya fue devuelta");
         }
         
-        LocalDate returnDate = returnRequest.getReturnDate();
-        reservation.setActualReturnDate(returnDate);
-        
-        // Calcular tarifa por demora si hay retraso
-        long daysLate = 0;
-        if (returnDate.isAfter(reservation.getExpectedReturnDate())) {
-            daysLate = java.time.temporal.ChronoUnit.DAYS.between(
-                    reservation.getExpectedReturnDate(), returnDate);
-            BigDecimal lateFee = calculateLateFee(reservation.getBook().getPrice(), daysLate);
-            reservation.setLateFee(lateFee);
-            reservation.setStatus(Reservation.ReservationStatus.OVERDUE);
-            log.info("Book returned {} days late. Late fee: {}", daysLate, lateFee);
+        long daysLate = applyReturn(reservation, returnRequest.getReturnDate());
+        if (daysLate > 0) {
+            log.info("Book returned {} days late. Late fee: {}", daysLate, reservation.getLateFee());
         } else {
-            reservation.setStatus(Reservation.ReservationStatus.RETURNED);
             log.info("Book returned on time");
         }
         
@@ -97,61 +189,162 @@ public class ReservationService {
         bookService.increaseAvailableQuantity(reservation.getBook().getExternalId());
         
         Reservation updatedReservation = reservationRepository.save(reservation);
+        revenueAnalyticsService.recordReturns(List.of(updatedReservation));
+        libraryMetrics.reservationsReturned(1);
         log.info("Returned book for reservation id: {}", reservationId);
         
         return convertToDTO(updatedReservation);
     }
     
+    /**
+     * Registra varias devoluciones en una sola transacción. Las reservas se leen con una
+     * consulta, el stock se repone con una actualización por libro y las reservas
+     * modificadas se escriben en lotes JDBC al confirmar. Las devoluciones que no se
+     * pueden registrar se informan como fallidas sin afectar al resto.
+     */
+    @Transactional
+    public ReturnBatchResponseDTO returnBooks(List<ReturnBatchItemRequestDTO> returns) {
+        long start = System.nanoTime();
+        // Bloqueadas hasta confirmar: otra devolución de las mismas reservas espera y las ve devueltas
+        Map<Long, Reservation> reservations = reservationRepository.findForReturnByIdIn(returns.stream()
+                        .map(ReturnBatchItemRequestDTO::getReservationId)
+                        .collect(Collectors.toSet())).stream()
+                .collect(Collectors.toMap(Reservation::getId, Function.identity()));
+        
+        ReservationBatchItemDTO[] results = new ReservationBatchItemDTO[returns.size()];
+        // Libros en orden de ID, igual que al crear reservas en lote
+        Map<Long, List<Integer>> indexesByBook = new TreeMap<>();
+        Set<Long> seen = new HashSet<>();
+        for (int i = 0; i < returns.size(); i++) {
+            Long reservationId = returns.get(i).getReservationId();
+            Reservation reservation = reservations.get(reservationId);
+            if (reservation == null) {
+                results[i] = failure(i, "Reserva no encontrada con ID: " + reservationId);
+            } else if (!reservation.isOpen() || !seen.add(reservationId)) {
+                results[i] = failure(i, "La reserva ya fue devuelta");
+            } else {
+                indexesByBook.computeIfAbsent(reservation.getBook().getExternalId(), id -> new ArrayList<>()).add(i);
+            }
+        }
+        
+        List<Reservation> returned = new ArrayList<>();
+        for (Map.Entry<Long, List<Integer>> entry : indexesByBook.entrySet()) {
+            List<Integer> indexes = entry.getValue();
+            // Una sola reposición por libro; si no entra en el stock no se devuelve ninguna de ese libro
+            boolean released = bookService.releaseCopies(entry.getKey(), indexes.size());
+            for (int index : indexes) {
+                if (!released) {
+                    results[index] = failure(index, "La cantidad disponible no puede exceder el stock");
+                    continue;
+                }
+                ReturnBatchItemRequestDTO item = returns.get(index);
+                Reservation reservation = reservations.get(item.getReservationId());
+                applyReturn(reservation, item.getReturnDate());
+                results[index] = new ReservationBatchItemDTO(index, true, convertToDTO(reservation), null);
+                returned.add(reservation);
+            }
+        }
+        // Las reservas modificadas se escriben al confirmar, agrupadas en lotes de UPDATE
+        revenueAnalyticsService.recordReturns(returned);
+        libraryMetrics.reservationsReturned(returned.size());
+        
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("Returned {} of {} reservations in batch in {} ms", returned.size(), returns.size(), elapsedMillis);
+        return new ReturnBatchResponseDTO(returns.size(), returned.size(), returns.size() - returned.size(),
+                Arrays.asList(results), elapsedMillis);
+    }
+    
+    // Marca la reserva como devuelta y calcula la multa; retorna los días de demora
+    private long applyReturn(Reservation reservation, LocalDate returnDate) {
+        reservation.setActualReturnDate(returnDate);
+        
+        // Calcular tarifa por demora si hay retraso
+        if (!returnDate.isAfter(reservation.getExpectedReturnDate())) {
+            reservation.setLateFee(Money.ZERO);
+            reservation.setAccruedLateFee(Money.ZERO);
+            reservation.setStatus(Reservation.ReservationStatus.RETURNED);
+            return 0;
+        }
+        long daysLate = ChronoUnit.DAYS.between(reservation.getExpectedReturnDate(), returnDate);
+        // La tarifa diaria es el precio del libro al momento de reservar: evita cargar el libro
+        Money lateFee = Money.ofCents(calculateLateFee(reservation.getDailyRate().getCents(), daysLate));
+        // La multa acumulada por el barrido diario queda igual a la definitiva
+        reservation.setLateFee(lateFee);
+        reservation.setAccruedLateFee(lateFee);
+        reservation.setStatus(Reservation.ReservationStatus.OVERDUE);
+        return daysLate;
+    }
+    
     @Transactional(readOnly = true)
     public ReservationResponseDTO getReservationById(Long id) {
-        Reservation reservation = reservationRepository.findById(id)
+        Reservation reservation = reservationRepository.findWithUserAndBookById(id)
                 .orElseThrow(() -> new RuntimeException("Reserva no encontrada con ID: " + id));
         return convertToDTO(reservation);
     }
     
     @Transactional(readOnly = true)
-    public List<ReservationResponseDTO> getAllReservations() {
-        return reservationRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public ReservationPageDTO getAllReservations(Long cursor, Integer size) {
+        int pageSize = resolvePageSize(size);
+        return toPage(reservationRepository.findByIdGreaterThanOrderByIdAsc(
+                resolveCursor(cursor), Limit.of(pageSize + 1)), pageSize);
     }
     
     @Transactional(readOnly = true)
-    public List<ReservationResponseDTO> getReservationsByUserId(Long userId) {
-        return reservationRepository.findByUserId(userId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public ReservationPageDTO getReservationsByUserId(Long userId, Long cursor, Integer size) {
+        int pageSize = resolvePageSize(size);
+        return toPage(reservationRepository.findByUserIdAndIdGreaterThanOrderByIdAsc(
+                userId, resolveCursor(cursor), Limit.of(pageSize + 1)), pageSize);
     }
     
     @Transactional(readOnly = true)
-    public List<ReservationResponseDTO> getActiveReservations() {
-        return reservationRepository.findByStatus(Reservation.ReservationStatus.ACTIVE).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public ReservationPageDTO getActiveReservations(Long cursor, Integer size) {
+        int pageSize = resolvePageSize(size);
+        return toPage(reservationRepository.findByStatusAndIdGreaterThanOrderByIdAsc(
+                Reservation.ReservationStatus.ACTIVE, resolveCursor(cursor), Limit.of(pageSize + 1)), pageSize);
     }
     
     @Transactional(readOnly = true)
-    public List<ReservationResponseDTO> getOverdueReservations() {
-        return reservationRepository.findOverdueReservations().stream()
+    public ReservationPageDTO getOverdueReservations(Long cursor, Integer size) {
+        int pageSize = resolvePageSize(size);
+        return toPage(reservationRepository.findOverdueReservations(
+                resolveCursor(cursor), Limit.of(pageSize + 1)), pageSize);
+    }
+    
+    private int resolvePageSize(Integer size) {
+        if (size == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+    
+    private long resolveCursor(Long cursor) {
+        return cursor != null ? cursor : 0L;
+    }
+    
+    // Se pide una fila de más para saber si existe una página siguiente
+    private ReservationPageDTO toPage(List<Reservation> rows, int pageSize) {
+        boolean hasNext = rows.size() > pageSize;
+        List<Reservation> pageRows = hasNext ? rows.subList(0, pageSize) : rows;
+        List<ReservationResponseDTO> content = pageRows.stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
+        Long nextCursor = hasNext ? pageRows.get(pageRows.size() - 1).getId() : null;
+        return new ReservationPageDTO(content, nextCursor);
     }
     
-    private BigDecimal calculateTotalFee(BigDecimal dailyRate, Integer rentalDays) {
+    // Las tarifas se calculan en centavos (long): sin BigDecimal intermedios por reserva
+    long calculateTotalFee(long dailyRateCents, int rentalDays) {
         // Tarifa total = precio del libro (dailyRate) × días de alquiler
-        return dailyRate.multiply(new BigDecimal(rentalDays))
-                .setScale(2, RoundingMode.HALF_UP);
+        return Money.multiply(dailyRateCents, rentalDays);
     }
     
-    private BigDecimal calculateLateFee(BigDecimal bookPrice, long daysLate) {
-        // 15% del precio del libro por cada día de demora
-        // Multa = precio del libro × 0.15 × días de demora
-        return bookPrice.multiply(LATE_FEE_PERCENTAGE)
-                .multiply(new BigDecimal(daysLate))
-                .setScale(2, RoundingMode.HALF_UP);
+    long calculateLateFee(long dailyRateCents, long daysLate) {
+        // 15% de la tarifa diaria (el precio del libro al reservar) por cada día de demora
+        // Multa = dailyRate × 0.15 × días de demora, redondeada HALF_UP al centavo
+        return Money.percentage(Money.multiply(dailyRateCents, daysLate), LATE_FEE_PERCENTAGE);
     }
     
-    private ReservationResponseDTO convertToDTO(Reservation reservation) {
+    ReservationResponseDTO convertToDTO(Reservation reservation) {
         ReservationResponseDTO dto = new ReservationResponseDTO();
         dto.setId(reservation.getId());
         dto.setUserId(reservation.getUser().getId());
@@ -165,6 +358,7 @@ public class ReservationService {
         dto.setDailyRate(reservation.getDailyRate());
         dto.setTotalFee(reservation.getTotalFee());
         dto.setLateFee(reservation.getLateFee());
+        dto.setAccruedLateFee(reservation.getAccruedLateFee());
         dto.setStatus(reservation.getStatus());
         dto.setCreatedAt(reservation.getCreatedAt());
         return dto;
@@ -0,0 +1,415 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.AnalyticsRebuildReportDTO;
+import com.example.libreria.dto.RevenuePeriodDTO;
+import com.example.libreria.dto.RevenueRankingDTO;
+import com.example.libreria.dto.RevenueReportDTO;
+import com.example.libreria.model.Money;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.repository.ReservationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Estadísticas de facturación a partir de acumulados por día, por libro y por usuario
+ * (tabla revenue_buckets). ReservationService los actualiza en la misma transacción en la
+ * que crea o devuelve reservas, así que los reportes leen los acumulados del rango pedido
+ * en lugar de recorrer la tabla de reservas.
+ * <p>
+ * El alquiler se imputa a la fecha de inicio de la reserva y la multa a la fecha de
+ * devolución. Los acumulados por libro y por usuario son mensuales. Los diarios se reparten
+ * en {@value #DAY_STRIPES} filas por día según el usuario: todas las reservas actualizan el
+ * acumulado del día, y con una sola fila se esperarían unas a otras hasta confirmar.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RevenueAnalyticsService {
+    
+    static final int DEFAULT_RANKING_LIMIT = 10;
+    static final int MAX_RANKING_LIMIT = 100;
+    static final int DAY_STRIPES = 16;
+    
+    private static final String DUPLICATE_KEY_STATE = "23505";
+    
+    private static final String UPDATE_BUCKET =
+            "UPDATE revenue_buckets SET reservations = reservations + ?, returns = returns + ?, " +
+            "rental_revenue = rental_revenue + ?, late_fee_revenue = late_fee_revenue + ? " +
+            "WHERE dimension = ? AND dimension_id = ? AND bucket_date = ?";
+    private static final String INSERT_BUCKET =
+            "INSERT INTO revenue_buckets (dimension, dimension_id, bucket_date, reservations, returns, " +
+            "rental_revenue, late_fee_revenue) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    // Un acumulado sin reservas ni devoluciones tampoco tiene importes
+    private static final String DELETE_EMPTY_BUCKET =
+            "DELETE FROM revenue_buckets WHERE dimension = ? AND dimension_id = ? AND bucket_date = ? " +
+            "AND reservations = 0 AND returns = 0";
+    private static final String SELECT_DAYS =
+            "SELECT bucket_date, reservations, returns, rental_revenue, late_fee_revenue FROM revenue_buckets " +
+            "WHERE dimension = 'DAY' AND bucket_date BETWEEN ? AND ? ORDER BY bucket_date";
+    private static final String SELECT_TOP_BOOKS =
+            "SELECT r.dimension_id, b.title AS name, SUM(r.reservations) AS reservations, SUM(r.returns) AS returns, " +
+            "SUM(r.rental_revenue) AS rental_revenue, SUM(r.late_fee_revenue) AS late_fee_revenue " +
+            "FROM revenue_buckets r LEFT JOIN books b ON b.external_id = r.dimension_id " +
+            "WHERE r.dimension = 'BOOK' AND r.bucket_date BETWEEN ? AND ? " +
+            "GROUP BY r.dimension_id, b.title " +
+            "ORDER BY SUM(r.rental_revenue) + SUM(r.late_fee_revenue) DESC, r.dimension_id FETCH FIRST ? ROWS ONLY";
+    private static final String SELECT_TOP_USERS =
+            "SELECT r.dimension_id, u.name AS name, SUM(r.reservations) AS reservations, SUM(r.returns) AS returns, " +
+            "SUM(r.rental_revenue) AS rental_revenue, SUM(r.late_fee_revenue) AS late_fee_revenue " +
+            "FROM revenue_buckets r LEFT JOIN users u ON u.id = r.dimension_id " +
+            "WHERE r.dimension = 'USER' AND r.bucket_date BETWEEN ? AND ? " +
+            "GROUP BY r.dimension_id, u.name " +
+            "ORDER BY SUM(r.rental_revenue) + SUM(r.late_fee_revenue) DESC, r.dimension_id FETCH FIRST ? ROWS ONLY";
+    static final String SELECT_HISTORY =
+            "SELECT user_id, book_external_id, start_date, actual_return_date, total_fee, late_fee " +
+            "FROM reservations WHERE id > ? AND id <= ?";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ReservationRepository reservationRepository;
+    private final Clock clock;
+    @Qualifier("analyticsRebuildExecutor")
+    private final Executor analyticsRebuildExecutor;
+    
+    @Value("${analytics.rebuild.chunk-size:10000}")
+    private int rebuildChunkSize;
+    
+    // Cada transacción que actualiza acumulados toma el lock de lectura hasta terminar;
+    // la reconstrucción toma el de escritura para no mezclar acumulados viejos y nuevos
+    private final ReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+    
+    enum Dimension {
+        DAY,
+        BOOK,
+        USER
+    }
+    
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordReservations(Collection<Reservation> reservations) {
+        Map<BucketKey, Totals> deltas = new TreeMap<>();
+        for (Reservation reservation : reservations) {
+            add(deltas, reservation.getUser().getId(), reservation.getBook().getExternalId(),
+                    reservation.getStartDate(), 1, 0, reservation.getTotalFee().getCents(), 0);
+        }
+        apply(deltas);
+    }
+    
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordReturns(Collection<Reservation> reservations) {
+        Map<BucketKey, Totals> deltas = new TreeMap<>();
+        for (Reservation reservation : reservations) {
+            add(deltas, reservation.getUser().getId(), reservation.getBook().getExternalId(),
+                    reservation.getActualReturnDate(), 0, 1, 0, reservation.getLateFee().getCents());
+        }
+        apply(deltas);
+    }
+    
+    /**
+     * Descuenta de los acumulados el historial de un usuario borrado, en la transacción que lo
+     * borra. La reconstrucción parte de las reservas que quedan y tampoco lo cuenta, así que los
+     * dos caminos llegan a los mismos acumulados: los que quedan en cero se borran, como los que
+     * la reconstrucción no vuelve a crear.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void removeUserHistory(long userId, Collection<ReservationRepository.DeletedHistoryView> history) {
+        Map<BucketKey, Totals> deltas = new TreeMap<>();
+        for (ReservationRepository.DeletedHistoryView group : history) {
+            add(deltas, userId, group.getBookExternalId(), group.getStartDate(),
+                    -group.getReservations(), 0, -cents(group.getTotalFee()), 0);
+            if (group.getActualReturnDate() != null) {
+                add(deltas, userId, group.getBookExternalId(), group.getActualReturnDate(),
+                        0, -group.getReservations(), 0, -cents(group.getLateFee()));
+            }
+        }
+        apply(deltas);
+        if (!deltas.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_EMPTY_BUCKET, new ArrayList<>(deltas.keySet()), deltas.size(), (ps, key) -> {
+                ps.setString(1, key.dimension().name());
+                ps.setLong(2, key.dimensionId());
+                ps.setDate(3, Date.valueOf(key.bucketDate()));
+            });
+        }
+    }
+    
+    @Transactional(readOnly = true)
+    public RevenueReportDTO getRevenue(LocalDate from, LocalDate to, RevenueReportDTO.Granularity granularity) {
+        LocalDate end = to != null ? to : LocalDate.now(clock);
+        LocalDate begin = from != null ? from : end.withDayOfMonth(1).minusMonths(11);
+        validateRange(begin, end);
+        
+        Map<String, Totals> periods = new LinkedHashMap<>();
+        Totals total = new Totals();
+        jdbcTemplate.query(SELECT_DAYS, rs -> {
+            LocalDate day = rs.getObject("bucket_date", LocalDate.class);
+            String period = granularity == RevenueReportDTO.Granularity.MONTH ? YearMonth.from(day).toString() : day.toString();
+            long reservations = rs.getLong("reservations");
+            long returns = rs.getLong("returns");
+            long rentalCents = cents(rs.getBigDecimal("rental_revenue"));
+            long lateFeeCents = cents(rs.getBigDecimal("late_fee_revenue"));
+            periods.computeIfAbsent(period, p -> new Totals()).add(reservations, returns, rentalCents, lateFeeCents);
+            total.add(reservations, returns, rentalCents, lateFeeCents);
+        }, Date.valueOf(begin), Date.valueOf(end));
+        
+        List<RevenuePeriodDTO> content = new ArrayList<>();
+        periods.forEach((period, totals) -> content.add(new RevenuePeriodDTO(period, totals.reservations, totals.returns,
+                Money.ofCents(totals.rentalCents), Money.ofCents(totals.lateFeeCents),
+                Money.ofCents(totals.rentalCents + totals.lateFeeCents))));
+        return new RevenueReportDTO(begin, end, granularity, content, total.reservations, total.returns,
+                Money.ofCents(total.rentalCents), Money.ofCents(total.lateFeeCents),
+                Money.ofCents(total.rentalCents + total.lateFeeCents));
+    }
+    
+    @Transactional(readOnly = true)
+    public List<RevenueRankingDTO> getTopBooks(YearMonth from, YearMonth to, Integer limit) {
+        return ranking(SELECT_TOP_BOOKS, from, to, limit);
+    }
+    
+    @Transactional(readOnly = true)
+    public List<RevenueRankingDTO> getTopUsers(YearMonth from, YearMonth to, Integer limit) {
+        return ranking(SELECT_TOP_USERS, from, to, limit);
+    }
+    
+    /**
+     * Recalcula todos los acumulados a partir de las reservas. Los bloques de IDs se leen en
+     * paralelo y cada uno se agrupa por separado; al final los acumulados se reemplazan en
+     * una sola transacción. Mientras dura, las reservas y devoluciones esperan.
+     */
+    public AnalyticsRebuildReportDTO rebuild() {
+        long start = System.nanoTime();
+        rebuildLock.writeLock().lock();
+        try {
+            ReservationRepository.IdRange range = reservationRepository.findIdRange();
+            List<CompletableFuture<Map<BucketKey, Totals>>> chunks = new ArrayList<>();
+            if (range.getMinId() != null) {
+                for (long fromId = range.getMinId() - 1; fromId < range.getMaxId(); fromId += rebuildChunkSize) {
+                    long chunkFrom = fromId;
+                    long chunkTo = fromId + rebuildChunkSize;
+                    chunks.add(CompletableFuture.supplyAsync(() -> aggregate(chunkFrom, chunkTo), analyticsRebuildExecutor));
+                }
+            }
+        
+            Map<BucketKey, Totals> buckets = new TreeMap<>();
+            for (CompletableFuture<Map<BucketKey, Totals>> chunk : chunks) {
+                chunk.join().forEach((key, totals) -> buckets.computeIfAbsent(key, k -> new Totals()).add(totals));
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.update("DELETE FROM revenue_buckets");
+                jdbcTemplate.batchUpdate(INSERT_BUCKET, buckets.entrySet(), 500, (ps, entry) -> {
+                    BucketKey key = entry.getKey();
+                    Totals totals = entry.getValue();
+                    ps.setString(1, key.dimension().name());
+                    ps.setLong(2, key.dimensionId());
+                    ps.setDate(3, Date.valueOf(key.bucketDate()));
+                    ps.setLong(4, totals.reservations);
+                    ps.setLong(5, totals.returns);
+                    ps.setBigDecimal(6, Money.ofCents(totals.rentalCents).toBigDecimal());
+                    ps.setBigDecimal(7, Money.ofCents(totals.lateFeeCents).toBigDecimal());
+                });
+            });
+        
+            long reservations = buckets.entrySet().stream()
+                    .filter(entry -> entry.getKey().dimension() == Dimension.DAY)
+                    .mapToLong(entry -> entry.getValue().reservations)
+                    .sum();
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            log.info("Revenue buckets rebuilt from {} reservations: {} buckets in {} chunks ({} ms)",
+                    reservations, buckets.size(), chunks.size(), elapsedMillis);
+            return new AnalyticsRebuildReportDTO(reservations, buckets.size(), chunks.size(), elapsedMillis);
+        } finally {
+            rebuildLock.writeLock().unlock();
+        }
+    }
+    
+    private Map<BucketKey, Totals> aggregate(long fromId, long toId) {
+        Map<BucketKey, Totals> buckets = new HashMap<>();
+        jdbcTemplate.query(SELECT_HISTORY, rs -> {
+            long userId = rs.getLong("user_id");
+            long bookExternalId = rs.getLong("book_external_id");
+            add(buckets, userId, bookExternalId, rs.getObject("start_date", LocalDate.class),
+                    1, 0, cents(rs.getBigDecimal("total_fee")), 0);
+            LocalDate returnDate = rs.getObject("actual_return_date", LocalDate.class);
+            if (returnDate != null) {
+                add(buckets, userId, bookExternalId, returnDate, 0, 1, 0, cents(rs.getBigDecimal("late_fee")));
+            }
+        }, fromId, toId);
+        return buckets;
+    }
+    
+    private static void add(Map<BucketKey, Totals> buckets, long userId, long bookExternalId, LocalDate date,
+                            long reservations, long returns, long rentalCents, long lateFeeCents) {
+        LocalDate month = date.withDayOfMonth(1);
+        buckets.computeIfAbsent(new BucketKey(Dimension.DAY, userId % DAY_STRIPES, date), k -> new Totals())
+                .add(reservations, returns, rentalCents, lateFeeCents);
+        buckets.computeIfAbsent(new BucketKey(Dimension.BOOK, bookExternalId, month), k -> new Totals())
+                .add(reservations, returns, rentalCents, lateFeeCents);
+        buckets.computeIfAbsent(new BucketKey(Dimension.USER, userId, month), k -> new Totals())
+                .add(reservations, returns, rentalCents, lateFeeCents);
+    }
+    
+    // Los acumulados se actualizan siempre en el mismo orden (TreeMap) para que dos
+    // transacciones no se bloqueen entre sí esperando filas que tiene la otra
+    private void apply(Map<BucketKey, Totals> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        holdReadLockUntilCompletion();
+        List<BucketKey> keys = new ArrayList<>(deltas.keySet());
+        int[] updated = update(keys, deltas);
+        
+        List<BucketKey> missing = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (updated[i] == 0) {
+                missing.add(keys.get(i));
+            }
+        }
+        for (BucketKey key : missing) {
+            insert(key, deltas.get(key));
+        }
+    }
+    
+    private int[] update(List<BucketKey> keys, Map<BucketKey, Totals> deltas) {
+        return jdbcTemplate.batchUpdate(UPDATE_BUCKET, keys, keys.size(), (ps, key) -> {
+            Totals delta = deltas.get(key);
+            ps.setLong(1, delta.reservations);
+            ps.setLong(2, delta.returns);
+            ps.setBigDecimal(3, Money.ofCents(delta.rentalCents).toBigDecimal());
+            ps.setBigDecimal(4, Money.ofCents(delta.lateFeeCents).toBigDecimal());
+            ps.setString(5, key.dimension().name());
+            ps.setLong(6, key.dimensionId());
+            ps.setDate(7, Date.valueOf(key.bucketDate()));
+        })[0];
+    }
+    
+    // El INSERT va en un savepoint: si otra transacción creó el mismo acumulado a la vez,
+    // se descarta solo el INSERT y se suma sobre la fila de la otra
+    private void insert(BucketKey key, Totals delta) {
+        Boolean inserted = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            Savepoint savepoint = connection.setSavepoint();
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_BUCKET)) {
+                ps.setString(1, key.dimension().name());
+                ps.setLong(2, key.dimensionId());
+                ps.setDate(3, Date.valueOf(key.bucketDate()));
+                ps.setLong(4, delta.reservations);
+                ps.setLong(5, delta.returns);
+                ps.setBigDecimal(6, Money.ofCents(delta.rentalCents).toBigDecimal());
+                ps.setBigDecimal(7, Money.ofCents(delta.lateFeeCents).toBigDecimal());
+                ps.executeUpdate();
+                connection.releaseSavepoint(savepoint);
+                return true;
+            } catch (SQLException e) {
+                connection.rollback(savepoint);
+                if (!DUPLICATE_KEY_STATE.equals(e.getSQLState())) {
+                    throw e;
+                }
+                return false;
+            }
+        });
+        if (!Boolean.TRUE.equals(inserted)) {
+            log.debug("Revenue bucket {} created by another transaction; adding to it", key);
+            update(List.of(key), Map.of(key, delta));
+        }
+    }
+    
+    private void holdReadLockUntilCompletion() {
+        if (TransactionSynchronizationManager.hasResource(rebuildLock)) {
+            return;
+        }
+        rebuildLock.readLock().lock();
+        TransactionSynchronizationManager.bindResource(rebuildLock, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(rebuildLock);
+                rebuildLock.readLock().unlock();
+            }
+        });
+    }
+    
+    private List<RevenueRankingDTO> ranking(String sql, YearMonth from, YearMonth to, Integer limit) {
+        YearMonth end = to != null ? to : YearMonth.now(clock);
+        YearMonth begin = from != null ? from : end.minusMonths(11);
+        validateRange(begin.atDay(1), end.atDay(1));
+        int rankingLimit = limit == null ? DEFAULT_RANKING_LIMIT : Math.max(1, Math.min(limit, MAX_RANKING_LIMIT));
+        
+        return jdbcTemplate.query(sql, (rs, rowNum) -> {
+            long rentalCents = cents(rs.getBigDecimal("rental_revenue"));
+            long lateFeeCents = cents(rs.getBigDecimal("late_fee_revenue"));
+            return new RevenueRankingDTO(rs.getLong("dimension_id"), rs.getString("name"),
+                    rs.getLong("reservations"), rs.getLong("returns"), Money.ofCents(rentalCents),
+                    Money.ofCents(lateFeeCents), Money.ofCents(rentalCents + lateFeeCents));
+        }, Date.valueOf(begin.atDay(1)), Date.valueOf(end.atDay(1)), rankingLimit);
+    }
+    
+    private void validateRange(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new RuntimeException("La fecha inicial no puede ser posterior a la fecha final");
+        }
+    }
+    
+    private static long cents(BigDecimal amount) {
+        return amount != null ? Money.of(amount).getCents() : 0;
+    }
+    
+    record BucketKey(Dimension dimension, long dimensionId, LocalDate bucketDate) implements Comparable<BucketKey> {
+        
+        @Override
+        public int compareTo(BucketKey other) {
+            int byDimension = dimension.compareTo(other.dimension);
+            if (byDimension != 0) {
+                return byDimension;
+            }
+            int byId = Long.compare(dimensionId, other.dimensionId);
+            return byId != 0 ? byId : bucketDate.compareTo(other.bucketDate);
+        }
+    }
+    
+    // Sumas de un acumulado, en centavos
+    private static final class Totals {
+        private long reservations;
+        private long returns;
+        private long rentalCents;
+        private long lateFeeCents;
+        
+        void add(long reservations, long returns, long rentalCents, long lateFeeCents) {
+            this.reservations += reservations;
+            this.returns += returns;
+            this.rentalCents += rentalCents;
+            this.lateFeeCents += lateFeeCents;
+        }
+        
+        void add(Totals other) {
+            add(other.reservations, other.returns, other.rentalCents, other.lateFeeCents);
+        }
+    }
+}
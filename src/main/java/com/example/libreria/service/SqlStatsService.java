@@ -0,0 +1,85 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.SqlRouteStatsDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Acumula por ruta las sentencias SQL de cada pedido y avisa cuando un pedido supera
+ * sql-stats.query-budget, la señal típica de una carga perezosa por fila (N+1).
+ */
+@Service
+@Slf4j
+public class SqlStatsService {
+    
+    private final int queryBudget;
+    private final Map<String, RouteStats> routes = new ConcurrentHashMap<>();
+    
+    public SqlStatsService(@Value("${sql-stats.query-budget:20}") int queryBudget) {
+        this.queryBudget = queryBudget;
+    }
+    
+    public int getQueryBudget() {
+        return queryBudget;
+    }
+    
+    public void record(String route, RequestSqlStats stats) {
+        boolean overBudget = stats.getStatements() > queryBudget;
+        RouteStats routeStats = routes.computeIfAbsent(route, key -> new RouteStats());
+        routeStats.requests.increment();
+        routeStats.statements.add(stats.getStatements());
+        routeStats.maxStatements.accumulate(stats.getStatements());
+        routeStats.jdbcNanos.add(stats.getJdbcNanos());
+        routeStats.entitiesLoaded.add(stats.getEntitiesLoaded());
+        if (overBudget) {
+            routeStats.overBudget.increment();
+            log.warn("{} executed {} SQL statements, over the budget of {} ({} entities loaded, {} ms in JDBC)",
+                    route, stats.getStatements(), queryBudget, stats.getEntitiesLoaded(),
+                    String.format(Locale.ROOT, "%.1f", stats.getJdbcNanos() / 1_000_000.0));
+        }
+    }
+    
+    // Rutas ordenadas por total de sentencias: las que más cargan la base, primero
+    public List<SqlRouteStatsDTO> getRouteStats() {
+        return routes.entrySet().stream()
+                .map(entry -> entry.getValue().toDTO(entry.getKey()))
+                .sorted(Comparator.comparingLong(SqlRouteStatsDTO::getStatements).reversed())
+                .toList();
+    }
+    
+    public void reset() {
+        routes.clear();
+    }
+    
+    private static class RouteStats {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder statements = new LongAdder();
+        private final LongAccumulator maxStatements = new LongAccumulator(Math::max, 0);
+        private final LongAdder jdbcNanos = new LongAdder();
+        private final LongAdder entitiesLoaded = new LongAdder();
+        private final LongAdder overBudget = new LongAdder();
+        
+        private SqlRouteStatsDTO toDTO(String route) {
+            long count = requests.sum();
+            long total = statements.sum();
+            return new SqlRouteStatsDTO(
+                    route,
+                    count,
+                    total,
+                    count == 0 ? 0 : (double) total / count,
+                    maxStatements.get(),
+                    jdbcNanos.sum() / 1_000_000.0,
+                    entitiesLoaded.sum(),
+                    overBudget.sum());
+        }
+    }
+}
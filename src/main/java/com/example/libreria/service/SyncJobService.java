@@ -0,0 +1,135 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.BookSyncReportDTO;
+import com.example.libreria.dto.SyncJobDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+
+/**
+ * Ejecuta la sincronización del catálogo como un trabajo en segundo plano.
+ * Solo hay un trabajo activo a la vez: si se pide otra sincronización mientras
+ * uno está pendiente o en curso, se retorna ese mismo trabajo.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SyncJobService {
+    
+    // Trabajos terminados que se conservan para consultar su resultado
+    static final int MAX_RETAINED_JOBS = 20;
+    
+    private final BookService bookService;
+    @Qualifier("bookSyncJobExecutor")
+    private final Executor bookSyncJobExecutor;
+    
+    private final Map<String, SyncJob> jobs = new LinkedHashMap<>();
+    private SyncJob activeJob;
+    
+    public synchronized SyncJobDTO submitSync() {
+        if (activeJob != null) {
+            log.info("Sync already in progress, joining job {}", activeJob.id);
+            return activeJob.toDTO();
+        }
+        SyncJob job = new SyncJob(UUID.randomUUID().toString());
+        jobs.put(job.id, job);
+        activeJob = job;
+        evictFinishedJobs();
+        try {
+            bookSyncJobExecutor.execute(() -> run(job));
+        } catch (RuntimeException e) {
+            finish(job, null, e);
+            throw new RuntimeException("No se pudo iniciar la sincronización: " + e.getMessage(), e);
+        }
+        log.info("Sync job {} submitted", job.id);
+        return job.toDTO();
+    }
+    
+    public synchronized SyncJobDTO getJob(String jobId) {
+        SyncJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new RuntimeException("Trabajo de sincronización no encontrado: " + jobId);
+        }
+        return job.toDTO();
+    }
+    
+    private void run(SyncJob job) {
+        job.start();
+        try {
+            BookSyncReportDTO report = bookService.syncBooksFromExternalApi(job::progress);
+            finish(job, report, null);
+        } catch (RuntimeException e) {
+            log.error("Sync job {} failed", job.id, e);
+            finish(job, null, e);
+        }
+    }
+    
+    private synchronized void finish(SyncJob job, BookSyncReportDTO report, RuntimeException error) {
+        job.finish(report, error);
+        if (activeJob == job) {
+            activeJob = null;
+        }
+    }
+    
+    private void evictFinishedJobs() {
+        var iterator = jobs.values().iterator();
+        while (jobs.size() > MAX_RETAINED_JOBS && iterator.hasNext()) {
+            if (iterator.next() != activeJob) {
+                iterator.remove();
+            }
+        }
+    }
+    
+    // El progreso lo escribe el hilo de sincronización y lo leen los pedidos de consulta
+    private static class SyncJob {
+        private final String id;
+        private final LocalDateTime submittedAt = LocalDateTime.now();
+        private SyncJobDTO.Status status = SyncJobDTO.Status.PENDING;
+        private LocalDateTime startedAt;
+        private LocalDateTime finishedAt;
+        private int inserted;
+        private int updated;
+        private int unchanged;
+        private long elapsedMillis;
+        private String error;
+        
+        SyncJob(String id) {
+            this.id = id;
+        }
+        
+        synchronized void start() {
+            status = SyncJobDTO.Status.RUNNING;
+            startedAt = LocalDateTime.now();
+        }
+        
+        synchronized void progress(BookSyncReportDTO report) {
+            inserted = report.getInserted();
+            updated = report.getUpdated();
+            unchanged = report.getUnchanged();
+        }
+        
+        synchronized void finish(BookSyncReportDTO report, RuntimeException failure) {
+            finishedAt = LocalDateTime.now();
+            if (failure != null) {
+                status = SyncJobDTO.Status.FAILED;
+                error = failure.getMessage();
+                return;
+            }
+            progress(report);
+            elapsedMillis = report.getElapsedMillis();
+            status = SyncJobDTO.Status.COMPLETED;
+        }
+        
+        synchronized SyncJobDTO toDTO() {
+            return new SyncJobDTO(id, status, submittedAt, startedAt, finishedAt,
+                    inserted + updated + unchanged, inserted, updated, unchanged, elapsedMillis, error);
+        }
+    }
+}
@@ -3,25 +3,37 @@ package com.example.libreria.service;
 import com.example.libreria.dto.UserRequestDTO;
 import com.example.libreria.dto.UserResponseDTO;
 import com.example.libreria.model.User;
+import com.example.libreria.repository.ReservationRepository;
 import com.example.libreria.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
+@Timed(value = "library.service", description = "Métodos públicos de los servicios del dominio")
 public class UserService {
     
     private final UserRepository userRepository;
+    private final EmailFilterService emailFilterService;
+    private final ReservationRepository reservationRepository;
+    private final BookService bookService;
+    private final RevenueAnalyticsService revenueAnalyticsService;
     
     @Transactional
     public UserResponseDTO createUser(UserRequestDTO requestDTO) {
-        if (userRepository.existsByEmail(requestDTO.getEmail())) {
+        if (isEmailTaken(requestDTO.getEmail())) {
             throw new RuntimeException("Ya existe un usuario con el email: " + requestDTO.getEmail());
         }
         
@@ -30,7 +42,14 @@ public class UserService {
         user.setEmail(requestDTO.getEmail());
         user.setPhoneNumber(requestDTO.getPhoneNumber());
         
-        User savedUser = userRepository.save(user);
+        // Con IDs IDENTITY el INSERT se ejecuta en save: un email duplicado falla acá
+        User savedUser;
+        try {
+            savedUser = userRepository.save(user);
+        } catch (DataIntegrityViolationException e) {
+            throw new RuntimeException("Ya existe un usuario con el email: " + requestDTO.getEmail());
+        }
+        emailFilterService.add(savedUser.getEmail());
         log.info("Created user with id: {}", savedUser.getId());
         return convertToDTO(savedUser);
     }
@@ -55,8 +74,8 @@ public class UserService {
                 .orElseThrow(() -> new RuntimeException("Usuario no encontrado con ID: " + id));
         
         // Verificar si el email ya existe en otro usuario
-        if (!user.getEmail().equals(requestDTO.getEmail()) && 
-            userRepository.existsByEmail(requestDTO.getEmail())) {
+        boolean emailChanged = !user.getEmail().equals(requestDTO.getEmail());
+        if (emailChanged && isEmailTaken(requestDTO.getEmail())) {
             throw new RuntimeException("Ya existe un usuario con el email: " + requestDTO.getEmail());
         }
         
@@ -64,18 +83,59 @@ public class UserService {
         user.setEmail(requestDTO.getEmail());
         user.setPhoneNumber(requestDTO.getPhoneNumber());
         
-        User updatedUser = userRepository.save(user);
+        // El UPDATE se envía ahora y no al confirmar, para informar un email duplicado
+        User updatedUser;
+        try {
+            updatedUser = userRepository.save(user);
+            userRepository.flush();
+        } catch (DataIntegrityViolationException e) {
+            throw new RuntimeException("Ya existe un usuario con el email: " + requestDTO.getEmail());
+        }
+        if (emailChanged) {
+            emailFilterService.add(updatedUser.getEmail());
+            emailFilterService.markStale();
+        }
         log.info("Updated user with id: {}", updatedUser.getId());
         return convertToDTO(updatedUser);
     }
     
+    /**
+     * Elimina el usuario y todo su historial de reservas sin cargarlo en memoria: las reservas
+     * se borran en una sola sentencia, las copias que seguían prestadas vuelven al stock con
+     * una actualización por libro y el historial se descuenta de las estadísticas de facturación.
+     * La cantidad de sentencias no depende del largo del historial.
+     * <p>
+     * Como en las devoluciones, primero se bloquean las reservas (al borrarlas) y después los
+     * libros, en orden de ID: un borrado y una devolución simultáneos no se traban entre sí.
+     */
     @Transactional
     public void deleteUser(Long id) {
         if (!userRepository.existsById(id)) {
             throw new RuntimeException("Usuario no encontrado con ID: " + id);
         }
-        userRepository.deleteById(id);
-        log.info("Deleted user with id: {}", id);
+        
+        List<ReservationRepository.DeletedHistoryView> history = reservationRepository.deleteByUserIdSummarizing(id);
+        Map<Long, Integer> openCopies = new TreeMap<>();
+        for (ReservationRepository.DeletedHistoryView group : history) {
+            if (group.getActualReturnDate() == null) {
+                openCopies.merge(group.getBookExternalId(), (int) group.getReservations(), Integer::sum);
+            }
+        }
+        openCopies.forEach((bookExternalId, copies) -> {
+            if (!bookService.releaseCopies(bookExternalId, copies)) {
+                log.warn("Could not restore {} copies of book {}: available quantity would exceed stock",
+                        copies, bookExternalId);
+            }
+        });
+        revenueAnalyticsService.removeUserHistory(id, history);
+        userRepository.deleteAllByIdInBatch(List.of(id));
+        emailFilterService.markStale();
+        log.info("Deleted user with id: {} (restored copies of {} books)", id, openCopies.size());
+    }
+    
+    // El filtro descarta sin consultar la base los emails que seguro no están registrados
+    private boolean isEmailTaken(String email) {
+        return emailFilterService.mightExist(email) && userRepository.existsByEmail(email);
     }
     
     @Transactional(readOnly = true)
@@ -84,7 +144,14 @@ public class UserService {
                 .orElseThrow(() -> new RuntimeException("Usuario no encontrado con ID: " + id));
     }
     
-    private UserResponseDTO convertToDTO(User user) {
+    // Usuarios por ID en una sola consulta; los IDs inexistentes no aparecen en el mapa
+    @Transactional(readOnly = true)
+    public Map<Long, User> getUserEntities(Collection<Long> ids) {
+        return userRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+    }
+    
+    UserResponseDTO convertToDTO(User user) {
         UserResponseDTO dto = new UserResponseDTO();
         dto.setId(user.getId());
         dto.setName(user.getName());
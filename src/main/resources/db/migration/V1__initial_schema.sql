@@ -0,0 +1,51 @@
+-- Esquema inicial, equivalente al que generaba Hibernate con ddl-auto: update
+
+CREATE SEQUENCE reservations_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE books (
+    external_id        BIGINT         NOT NULL,
+    title              VARCHAR(255)   NOT NULL,
+    first_publish_year INTEGER,
+    edition_count      INTEGER,
+    has_fulltext       BOOLEAN,
+    price              NUMERIC(10, 2) NOT NULL,
+    stock_quantity     INTEGER        NOT NULL,
+    available_quantity INTEGER        NOT NULL,
+    content_hash       VARCHAR(64),
+    PRIMARY KEY (external_id)
+);
+
+CREATE TABLE book_authors (
+    book_id     BIGINT NOT NULL,
+    author_name VARCHAR(255),
+    CONSTRAINT fk_book_authors_book FOREIGN KEY (book_id) REFERENCES books (external_id)
+);
+
+CREATE TABLE users (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    name         VARCHAR(255) NOT NULL,
+    email        VARCHAR(255) NOT NULL,
+    phone_number VARCHAR(255),
+    created_at   TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_users_email UNIQUE (email)
+);
+
+CREATE TABLE reservations (
+    id                   BIGINT         NOT NULL,
+    user_id              BIGINT         NOT NULL,
+    book_external_id     BIGINT         NOT NULL,
+    rental_days          INTEGER        NOT NULL,
+    start_date           DATE           NOT NULL,
+    expected_return_date DATE           NOT NULL,
+    actual_return_date   DATE,
+    daily_rate           NUMERIC(10, 2) NOT NULL,
+    total_fee            NUMERIC(10, 2),
+    late_fee             NUMERIC(10, 2),
+    accrued_late_fee     NUMERIC(10, 2),
+    status               ENUM ('ACTIVE', 'OVERDUE', 'RETURNED') NOT NULL,
+    created_at           TIMESTAMP(6)   NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_reservations_user FOREIGN KEY (user_id) REFERENCES users (id),
+    CONSTRAINT fk_reservations_book FOREIGN KEY (book_external_id) REFERENCES books (external_id)
+);
@@ -0,0 +1,20 @@
+-- Índices para las consultas frecuentes de los repositorios.
+-- QueryPlanTest ejecuta EXPLAIN sobre cada consulta y falla si alguna vuelve a recorrer la tabla completa
+
+-- Reservas de un usuario, paginadas por id
+CREATE INDEX idx_reservations_user_id ON reservations (user_id, id);
+
+-- Reservas por estado, paginadas por id (activas)
+CREATE INDEX idx_reservations_status_id ON reservations (status, id);
+
+-- Vencidas sin devolver: status = 'OVERDUE' AND actual_return_date IS NULL, paginadas por id
+CREATE INDEX idx_reservations_status_return_id ON reservations (status, actual_return_date, id);
+
+-- Barrido diario: reservas abiertas con la fecha de devolución pasada
+CREATE INDEX idx_reservations_status_expected ON reservations (status, expected_return_date);
+
+-- Reservas de un libro
+CREATE INDEX idx_reservations_book ON reservations (book_external_id);
+
+-- Autores de un bloque de libros (carga de la colección book_authors)
+CREATE INDEX idx_book_authors_book ON book_authors (book_id);
@@ -16,8 +16,8 @@
 --     (90150, 'Gabriel García Márquez'),
 --     (50012, 'Jane Austen');
 
--- Insertar usuarios de ejemplo
-INSERT INTO users (name, email, phone_number, created_at)
+-- Insertar usuarios de ejemplo (MERGE por email: no falla si ya existen)
+MERGE INTO users (name, email, phone_number, created_at) KEY (email)
 VALUES 
     ('Juan Pérez', 'juan.perez@example.com', '123456789', CURRENT_TIMESTAMP),
     ('María García', 'maria.garcia@example.com', '987654321', CURRENT_TIMESTAMP),
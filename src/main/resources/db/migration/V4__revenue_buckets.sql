@@ -0,0 +1,17 @@
+-- Acumulados de facturación que mantiene RevenueAnalyticsService al crear y devolver reservas.
+-- dimension DAY: acumulados por día, repartidos en filas según el usuario (dimension_id = user_id % 16).
+-- dimension BOOK y USER: un acumulado por mes (bucket_date = primer día del mes) y por libro o usuario.
+CREATE TABLE revenue_buckets (
+    dimension        VARCHAR(8)     NOT NULL,
+    dimension_id     BIGINT         NOT NULL,
+    bucket_date      DATE           NOT NULL,
+    reservations     BIGINT         NOT NULL,
+    returns          BIGINT         NOT NULL,
+    rental_revenue   NUMERIC(19, 2) NOT NULL,
+    late_fee_revenue NUMERIC(19, 2) NOT NULL,
+    CONSTRAINT pk_revenue_buckets PRIMARY KEY (dimension, dimension_id, bucket_date)
+);
+
+-- Rankings de libros y usuarios de un rango de meses y reporte por días; incluye dimension_id
+-- para que también resuelva la actualización de un acumulado puntual
+CREATE INDEX idx_revenue_buckets_dimension_date ON revenue_buckets (dimension, bucket_date, dimension_id);
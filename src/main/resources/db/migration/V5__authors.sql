@@ -0,0 +1,36 @@
+-- Autores normalizados: cada nombre se guarda una sola vez y book_authors pasa a ser la
+-- relación ordenada entre libros y autores
+
+CREATE SEQUENCE authors_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE authors (
+    id   BIGINT       NOT NULL,
+    name VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_authors_name UNIQUE (name)
+);
+
+-- Cada id tomado de la secuencia queda fuera de los bloques que reserva Hibernate después
+INSERT INTO authors (id, name)
+SELECT NEXT VALUE FOR authors_seq, name
+FROM (SELECT DISTINCT author_name AS name FROM book_authors WHERE author_name IS NOT NULL);
+
+DELETE FROM book_authors WHERE author_name IS NULL;
+
+ALTER TABLE book_authors ADD COLUMN author_id BIGINT;
+ALTER TABLE book_authors ADD COLUMN author_order INTEGER;
+
+UPDATE book_authors ba SET author_id = (SELECT a.id FROM authors a WHERE a.name = ba.author_name);
+
+-- El orden original de los autores de cada libro es el orden de inserción de las filas
+UPDATE book_authors ba SET author_order = (
+    SELECT COUNT(*) FROM book_authors o WHERE o.book_id = ba.book_id AND o._ROWID_ < ba._ROWID_);
+
+ALTER TABLE book_authors ALTER COLUMN author_id SET NOT NULL;
+ALTER TABLE book_authors ALTER COLUMN author_order SET NOT NULL;
+ALTER TABLE book_authors DROP COLUMN author_name;
+ALTER TABLE book_authors ADD CONSTRAINT pk_book_authors PRIMARY KEY (book_id, author_order);
+ALTER TABLE book_authors ADD CONSTRAINT fk_book_authors_author FOREIGN KEY (author_id) REFERENCES authors (id);
+
+-- Libros de un autor (y la clave foránea al borrar autores)
+CREATE INDEX idx_book_authors_author ON book_authors (author_id);
@@ -0,0 +1,259 @@
+package com.example.libreria.config;
+
+import com.example.libreria.dto.HttpPoolStatsDTO;
+import com.example.libreria.service.HttpClientPoolService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compara el cliente con pool contra SimpleClientHttpRequestFactory usando un
+ * servidor local mínimo con keep-alive que cuenta las conexiones aceptadas.
+ * Cada conexión nueva demora {@link #HANDSHAKE_MILLIS} como lo haría un handshake real.
+ * Cada cliente atiende dos rondas de carga: el pool reutiliza en la segunda las conexiones
+ * de la primera. Se verifican las conexiones abiertas, no los tiempos, que dependen de la máquina.
+ */
+class RestTemplateConfigTest {
+    
+    private static final int MAX_PER_ROUTE = 8;
+    private static final int CLIENT_THREADS = 16;
+    private static final int REQUESTS_PER_THREAD = 25;
+    // Costo simulado de establecer una conexión nueva (handshake TCP+TLS contra la API real)
+    private static final long HANDSHAKE_MILLIS = 20;
+    // Demora de las respuestas de /books/slow
+    private static final long SLOW_RESPONSE_MILLIS = 2000;
+    private static final String BODY = "{\"id\": 258027, \"title\": \"The Lord of the Rings\"}";
+    
+    private final RestTemplateConfig config = new RestTemplateConfig();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger acceptedConnections = new AtomicInteger();
+    private final AtomicInteger gzipResponses = new AtomicInteger();
+    private final AtomicBoolean running = new AtomicBoolean(true);
+    private ServerSocket serverSocket;
+    private ExecutorService serverExecutor;
+    private String url;
+    private String compressedUrl;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        serverSocket = new ServerSocket(0, 256, InetAddress.getLoopbackAddress());
+        serverExecutor = Executors.newCachedThreadPool();
+        serverExecutor.execute(() -> {
+            while (running.get()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    acceptedConnections.incrementAndGet();
+                    serverExecutor.execute(() -> serve(socket));
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        });
+        url = "http://127.0.0.1:" + serverSocket.getLocalPort() + "/books";
+        compressedUrl = url + "/compressed";
+    }
+    
+    @AfterEach
+    void tearDown() throws IOException {
+        running.set(false);
+        serverSocket.close();
+        serverExecutor.shutdownNow();
+    }
+    
+    // Atiende pedidos sucesivos sobre la misma conexión hasta que el cliente la cierre
+    private void serve(Socket socket) {
+        try (socket) {
+            Thread.sleep(HANDSHAKE_MILLIS);
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            OutputStream out = socket.getOutputStream();
+            String requestLine;
+            while ((requestLine = in.readLine()) != null && !requestLine.isEmpty()) {
+                // Como un servidor real, comprime solo lo que vale la pena comprimir
+                boolean gzip = false;
+                String header;
+                while ((header = in.readLine()) != null && !header.isEmpty()) {
+                    String lower = header.toLowerCase(Locale.ROOT);
+                    gzip |= lower.startsWith("accept-encoding:") && lower.contains("gzip");
+                }
+                gzip &= requestLine.contains("/books/compressed");
+                if (requestLine.contains("/books/slow")) {
+                    Thread.sleep(SLOW_RESPONSE_MILLIS);
+                }
+                byte[] body = gzip ? gzip(BODY) : BODY.getBytes(StandardCharsets.UTF_8);
+                if (gzip) {
+                    gzipResponses.incrementAndGet();
+                }
+                String headers = "HTTP/1.1 200 OK\r\n"
+                        + "Content-Type: application/json\r\n"
+                        + (gzip ? "Content-Encoding: gzip\r\n" : "")
+                        + "Content-Length: " + body.length + "\r\n\r\n";
+                ByteArrayOutputStream response = new ByteArrayOutputStream();
+                response.writeBytes(headers.getBytes(StandardCharsets.US_ASCII));
+                response.writeBytes(body);
+                out.write(response.toByteArray());
+                out.flush();
+            }
+        } catch (IOException e) {
+            // El cliente cerró la conexión
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return compressed.toByteArray();
+    }
+    
+    private void runLoad(RestTemplate restTemplate) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENT_THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < CLIENT_THREADS; i++) {
+                futures.add(clients.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < REQUESTS_PER_THREAD; j++) {
+                        assertEquals(BODY, restTemplate.getForObject(url, String.class));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+    
+    private RestTemplate pooledRestTemplate(CloseableHttpClient httpClient) {
+        return config.restTemplate(config.clientHttpRequestFactory(httpClient, 5000, 5000), meterRegistry);
+    }
+    
+    @Test
+    void testPooledClient_RecordsLatencyAndPayloadPerPath() throws Exception {
+        PoolingHttpClientConnectionManager connectionManager =
+                config.externalApiConnectionManager(50, MAX_PER_ROUTE, 5000, 5000);
+        try (CloseableHttpClient httpClient = config.externalApiHttpClient(connectionManager, Duration.ofSeconds(30))) {
+            RestTemplate pooled = pooledRestTemplate(httpClient);
+            pooled.getForObject(url + "/258027", String.class);
+            pooled.getForObject(url + "/140081", String.class);
+            pooled.getForObject(compressedUrl, String.class);
+            
+            // Los IDs se agrupan en una sola serie y el tamaño se cuenta ya descomprimido
+            Timer byId = meterRegistry.get("library.external.books.requests")
+                    .tags("path", "/books/{id}", "status", "200").timer();
+            assertEquals(2, byId.count());
+            DistributionSummary compressed = meterRegistry.get("library.external.books.payload")
+                    .tags("path", "/books/compressed").summary();
+            assertEquals(1, compressed.count());
+            assertEquals(BODY.getBytes(StandardCharsets.UTF_8).length, compressed.totalAmount());
+        }
+    }
+    
+    @Test
+    void testPooledClient_DecompressesGzip() throws Exception {
+        PoolingHttpClientConnectionManager connectionManager =
+                config.externalApiConnectionManager(50, MAX_PER_ROUTE, 5000, 5000);
+        try (CloseableHttpClient httpClient = config.externalApiHttpClient(connectionManager, Duration.ofSeconds(30))) {
+            String body = pooledRestTemplate(httpClient).getForObject(compressedUrl, String.class);
+            
+            assertEquals(BODY, body);
+            assertEquals(1, gzipResponses.get());
+        }
+    }
+    
+    @Test
+    void testRefreshClient_TimesOutAndReleasesConnection() throws Exception {
+        PoolingHttpClientConnectionManager connectionManager =
+                config.externalApiConnectionManager(50, MAX_PER_ROUTE, 5000, 5000);
+        try (CloseableHttpClient httpClient = config.externalApiHttpClient(connectionManager, Duration.ofSeconds(30))) {
+            RestTemplate refresh = config.bookRefreshRestTemplate(httpClient, meterRegistry, 5000, Duration.ofMillis(200));
+            
+            long begin = System.nanoTime();
+            ResourceAccessException e = assertThrows(ResourceAccessException.class,
+                    () -> refresh.getForObject(url + "/slow", String.class));
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+            
+            assertInstanceOf(SocketTimeoutException.class, e.getCause());
+            assertTrue(elapsedMillis < SLOW_RESPONSE_MILLIS, () -> "Demoró " + elapsedMillis + " ms");
+            // La llamada cortada no retiene su conexión hasta que llegue la respuesta
+            assertEquals(0, new HttpClientPoolService(connectionManager).getPoolStats().getLeased());
+            assertEquals(BODY, refresh.getForObject(url, String.class));
+        }
+    }
+    
+    @Test
+    void testPooledClient_ReusesConnectionsUnderLoad() throws Exception {
+        PoolingHttpClientConnectionManager connectionManager =
+                config.externalApiConnectionManager(50, MAX_PER_ROUTE, 5000, 5000);
+        try (CloseableHttpClient httpClient = config.externalApiHttpClient(connectionManager, Duration.ofSeconds(30))) {
+            RestTemplate pooled = pooledRestTemplate(httpClient);
+            
+            runLoad(pooled);
+            runLoad(pooled);
+            int pooledConnections = acceptedConnections.getAndSet(0);
+            HttpPoolStatsDTO stats = new HttpClientPoolService(connectionManager).getPoolStats();
+            
+            // Nunca más conexiones que el máximo por ruta, por muchos hilos que pidan
+            assertTrue(pooledConnections <= MAX_PER_ROUTE,
+                    () -> "El pool abrió " + pooledConnections + " conexiones con un máximo de " + MAX_PER_ROUTE);
+            assertEquals(0, stats.getLeased());
+            assertEquals(0, stats.getPending());
+            assertEquals(pooledConnections, stats.getAvailable());
+            assertEquals(1, stats.getRoutes());
+            
+            SimpleClientHttpRequestFactory simpleFactory = new SimpleClientHttpRequestFactory();
+            simpleFactory.setConnectTimeout(5000);
+            simpleFactory.setReadTimeout(5000);
+            RestTemplate simple = new RestTemplate(simpleFactory);
+            runLoad(simple);
+            runLoad(simple);
+            int simpleConnections = acceptedConnections.get();
+            
+            // HttpURLConnection solo conserva 5 conexiones ociosas: con más hilos abre conexiones nuevas
+            assertTrue(simpleConnections > pooledConnections,
+                    () -> "Sin pool: " + simpleConnections + " conexiones; con pool: " + pooledConnections);
+            assertTrue(simpleConnections > MAX_PER_ROUTE);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.BookResponseDTO;
+import com.example.libreria.model.Author;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Money;
+import com.example.libreria.repository.AuthorRepository;
+import com.example.libreria.repository.BookRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class BookCatalogQueryCountTest {
+
+    private static final int BOOKS = 200;
+    private static final long FIRST_EXTERNAL_ID = 550000L;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        if (bookRepository.existsByExternalId(FIRST_EXTERNAL_ID)) {
+            return;
+        }
+
+        // Todos los libros comparten un autor y suman el propio, como las ediciones de una misma obra
+        Author shared = authorRepository.save(new Author(null, "Autor del catálogo"));
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < BOOKS; i++) {
+            Book book = new Book();
+            book.setExternalId(FIRST_EXTERNAL_ID + i);
+            book.setTitle("Edición " + i);
+            book.setAuthors(new ArrayList<>(List.of(authorRepository.save(new Author(null, "Coautor " + i)), shared)));
+            book.setPrice(Money.of("10.00"));
+            book.setStockQuantity(1);
+            book.setAvailableQuantity(1);
+            books.add(book);
+        }
+        bookRepository.saveAll(books);
+    }
+
+    @Test
+    void testGetAllBooksLoadsAuthorsInOneStatement() {
+        statistics.clear();
+
+        Map<Long, BookResponseDTO> catalog = bookService.getAllBooks().stream()
+                .collect(Collectors.toMap(BookResponseDTO::getExternalId, Function.identity()));
+
+        // Libros y autores llegan en el mismo JOIN, sin una consulta extra por libro
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getCollectionFetchCount());
+        for (int i = 0; i < BOOKS; i++) {
+            assertEquals(List.of("Coautor " + i, "Autor del catálogo"), catalog.get(FIRST_EXTERNAL_ID + i).getAuthorName());
+        }
+    }
+
+    @Test
+    void testSharedAuthorIsStoredOnce() {
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM authors WHERE name = 'Autor del catálogo'", Integer.class));
+        assertEquals(BOOKS, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM book_authors ba JOIN authors a ON a.id = ba.author_id " +
+                "WHERE a.name = 'Autor del catálogo'", Integer.class));
+    }
+}
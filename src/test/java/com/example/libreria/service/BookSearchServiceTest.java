@@ -0,0 +1,88 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.BookResponseDTO;
+import com.example.libreria.model.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookSearchServiceTest {
+
+    private BookSearchService bookSearchService;
+
+    private BookResponseDTO book(long externalId, String title, String... authors) {
+        return new BookResponseDTO(externalId, title, List.of(authors), 1967, 1, true, Money.of("10.00"), 5, 5);
+    }
+
+    @BeforeEach
+    void setUp() {
+        bookSearchService = new BookSearchService();
+        bookSearchService.replaceAll(List.of(
+                book(1L, "Cien años de soledad", "Gabriel García Márquez"),
+                book(2L, "El amor en los tiempos del cólera", "Gabriel García Márquez"),
+                book(3L, "Crónica de una muerte anunciada", "Gabriel García Márquez"),
+                book(4L, "Rayuela", "Julio Cortázar"),
+                book(5L, "Los años del Garcia", "Ana Solar")));
+    }
+
+    @Test
+    void testTokenize_IgnoresAccentsCaseAndPunctuation() {
+        assertArrayEquals(new String[]{"cronica", "de", "una", "muerte"},
+                BookSearchService.tokenize("¡Crónica de UNA muerte!"));
+        assertArrayEquals(new String[]{"nino", "1984"}, BookSearchService.tokenize("  Niño, 1984 "));
+        assertEquals(0, BookSearchService.tokenize(" ¿? ").length);
+    }
+
+    @Test
+    void testSearch_AccentInsensitive() {
+        assertEquals(List.of(4L), bookSearchService.search("CORTAZAR", 10));
+        assertEquals(List.of(3L), bookSearchService.search("cronica", 10));
+    }
+
+    @Test
+    void testSearch_RequiresAllTermsAndMatchesPrefixes() {
+        assertEquals(List.of(2L), bookSearchService.search("garc amor", 10));
+        assertEquals(List.of(), bookSearchService.search("garcia rayuela", 10));
+        assertEquals(List.of(), bookSearchService.search("zzz", 10));
+    }
+
+    @Test
+    void testSearch_RanksTitleAndExactMatchesFirst() {
+        // "García" en el título pesa más que en el autor; a igual puntaje, primero el título más corto
+        assertEquals(List.of(5L, 1L, 3L, 2L), bookSearchService.search("garcia", 10));
+        assertEquals(List.of(1L, 5L), bookSearchService.search("años", 10));
+        assertEquals(List.of(5L, 1L), bookSearchService.search("garcia", 2));
+    }
+
+    @Test
+    void testPutAll_ReplacesChangedBooks() {
+        bookSearchService.putAll(List.of(
+                book(4L, "Historias de cronopios y de famas", "Julio Cortázar"),
+                book(6L, "La casa de los espíritus", "Isabel Allende")));
+
+        assertEquals(List.of(), bookSearchService.search("rayuela", 10));
+        assertEquals(List.of(4L), bookSearchService.search("cronopios", 10));
+        assertEquals(List.of(6L), bookSearchService.search("espiritus allende", 10));
+        assertEquals(6, bookSearchService.size());
+    }
+
+    @Test
+    void testPutAll_CompactsAfterManyChanges() {
+        List<BookResponseDTO> renamed = new ArrayList<>();
+        for (int round = 0; round < 5; round++) {
+            renamed.clear();
+            for (long id = 1; id <= 5; id++) {
+                renamed.add(book(id, "Edición " + round + " libro " + id, "Autor"));
+            }
+            bookSearchService.putAll(renamed);
+        }
+
+        assertEquals(5, bookSearchService.size());
+        assertEquals(List.of(3L), bookSearchService.search("edicion 4 libro 3", 10));
+        assertEquals(List.of(), bookSearchService.search("soledad", 10));
+    }
+}
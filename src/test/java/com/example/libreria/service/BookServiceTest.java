@@ -1,8 +1,14 @@
 package com.example.libreria.service;
 
+import com.example.libreria.dto.BookRefreshReportDTO;
 import com.example.libreria.dto.BookResponseDTO;
+import com.example.libreria.dto.BookSyncReportDTO;
 import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.dto.ExternalCatalogDTO;
+import com.example.libreria.model.Author;
 import com.example.libreria.model.Book;
+import com.example.libreria.model.Money;
+import com.example.libreria.repository.AuthorRepository;
 import com.example.libreria.repository.BookRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,14 +16,28 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -26,9 +46,24 @@ class BookServiceTest {
     @Mock
     private BookRepository bookRepository;
     
+    @Mock
+    private AuthorRepository authorRepository;
+    
     @Mock
     private ExternalBookService externalBookService;
     
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    
+    @Mock
+    private CatalogSnapshotService catalogSnapshotService;
+    
+    @Mock
+    private BookSearchService bookSearchService;
+    
+    @Mock
+    private Executor catalogSyncExecutor;
+    
     @InjectMocks
     private BookService bookService;
     
@@ -40,7 +75,7 @@ class BookServiceTest {
         testBook = new Book();
         testBook.setExternalId(258027L);
         testBook.setTitle("The Lord of the Rings");
-        testBook.setPrice(new BigDecimal("15.99"));
+        testBook.setPrice(Money.of("15.99"));
         testBook.setStockQuantity(10);
         testBook.setAvailableQuantity(5);
         
@@ -48,28 +83,271 @@ class BookServiceTest {
         externalBookDTO.setId(258027L);
         externalBookDTO.setTitle("The Lord of the Rings");
         externalBookDTO.setPrice(new BigDecimal("15.99"));
+        
+        ReflectionTestUtils.setField(bookService, "syncChunkSize", 2);
+    }
+    
+    private void runTransactionsInline() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+    }
+    
+    // La sincronización guarda cada bloque en el ejecutor; en los tests, en el mismo hilo
+    private void runSyncInline() {
+        runTransactionsInline();
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(catalogSyncExecutor).execute(any());
+    }
+    
+    // Simula la API externa entregando el catálogo en bloques del tamaño pedido
+    @SuppressWarnings("unchecked")
+    private ExternalCatalogDTO upstreamReturns(ExternalBookDTO... books) {
+        ExternalCatalogDTO catalog = new ExternalCatalogDTO(false, books.length, "\"v1\"", null);
+        when(externalBookService.streamCatalogIfModified(anyInt(), any())).thenAnswer(invocation -> {
+            int chunkSize = invocation.getArgument(0);
+            Consumer<List<ExternalBookDTO>> consumer = invocation.getArgument(1);
+            for (int from = 0; from < books.length; from += chunkSize) {
+                consumer.accept(Arrays.asList(books).subList(from, Math.min(from + chunkSize, books.length)));
+            }
+            return catalog;
+        });
+        return catalog;
+    }
+    
+    private BookRepository.ContentHashView hashView(Long externalId, String contentHash) {
+        return new BookRepository.ContentHashView() {
+            @Override
+            public Long getExternalId() {
+                return externalId;
+            }
+            
+            @Override
+            public String getContentHash() {
+                return contentHash;
+            }
+        };
     }
     
     @Test
+    @SuppressWarnings("unchecked")
     void testSyncBooksFromExternalApi_NewBook() {
-        when(externalBookService.fetchAllBooks()).thenReturn(Arrays.asList(externalBookDTO));
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.empty());
-        when(bookRepository.save(any(Book.class))).thenReturn(testBook);
+        runSyncInline();
+        ExternalCatalogDTO catalog = upstreamReturns(externalBookDTO);
+        when(bookRepository.findContentHashesByExternalIdIn(anyCollection())).thenReturn(List.of());
         
-        bookService.syncBooksFromExternalApi();
+        BookSyncReportDTO report = bookService.syncBooksFromExternalApi();
         
-        verify(bookRepository, times(1)).save(any(Book.class));
+        assertEquals(1, report.getInserted());
+        assertEquals(0, report.getUpdated());
+        verify(bookRepository, times(1)).saveAll(argThat(books -> ((List<Book>) books).size() == 1
+                && ((List<Book>) books).get(0).getContentHash().equals(BookService.contentHash(externalBookDTO))));
+        verify(bookRepository, never()).save(any(Book.class));
+        verify(externalBookService, times(1)).rememberValidators(catalog);
     }
     
     @Test
     void testSyncBooksFromExternalApi_ExistingBook() {
-        when(externalBookService.fetchAllBooks()).thenReturn(Arrays.asList(externalBookDTO));
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
-        when(bookRepository.save(any(Book.class))).thenReturn(testBook);
+        runSyncInline();
+        externalBookDTO.setTitle("The Lord of the Rings (Edición revisada)");
+        upstreamReturns(externalBookDTO);
+        when(bookRepository.findContentHashesByExternalIdIn(anyCollection()))
+                .thenReturn(List.of(hashView(258027L, "hash-anterior")));
+        when(bookRepository.findAllWithAuthorsByExternalIdIn(anyCollection())).thenReturn(List.of(testBook));
+        
+        BookSyncReportDTO report = bookService.syncBooksFromExternalApi();
+        
+        assertEquals(0, report.getInserted());
+        assertEquals(1, report.getUpdated());
+        assertEquals("The Lord of the Rings (Edición revisada)", testBook.getTitle());
+        assertEquals(BookService.contentHash(externalBookDTO), testBook.getContentHash());
+        verify(bookRepository, never()).save(any(Book.class));
+    }
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSyncBooksFromExternalApi_ResolvesSharedAuthorsOncePerChunk() {
+        runSyncInline();
+        externalBookDTO.setAuthorName(List.of("Gabriel García Márquez"));
+        ExternalBookDTO secondBook = externalBook(140081L, "Crónica de una muerte anunciada");
+        secondBook.setAuthorName(List.of("Gabriel García Márquez", "Mario Vargas Llosa"));
+        upstreamReturns(externalBookDTO, secondBook);
+        Author garciaMarquez = new Author(1L, "Gabriel García Márquez");
+        when(bookRepository.findContentHashesByExternalIdIn(anyCollection())).thenReturn(List.of());
+        when(authorRepository.findByNameIn(anyCollection())).thenReturn(List.of(garciaMarquez));
+        when(authorRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
         
         bookService.syncBooksFromExternalApi();
         
-        verify(bookRepository, times(1)).save(any(Book.class));
+        // Una consulta por bloque y solo el autor que faltaba se inserta
+        verify(authorRepository, times(1)).findByNameIn(argThat((Collection<String> names) ->
+                names.size() == 2 && names.containsAll(List.of("Gabriel García Márquez", "Mario Vargas Llosa"))));
+        verify(authorRepository).saveAll(argThat((List<Author> authors) ->
+                authors.size() == 1 && authors.get(0).getName().equals("Mario Vargas Llosa")));
+        verify(bookRepository).saveAll(argThat(books -> {
+            List<Book> saved = (List<Book>) books;
+            return saved.size() == 2
+                    && saved.get(0).getAuthors().equals(List.of(garciaMarquez))
+                    && saved.get(1).getAuthors().get(0) == garciaMarquez
+                    && saved.get(1).getAuthors().get(1).getName().equals("Mario Vargas Llosa");
+        }));
+    }
+    
+    @Test
+    void testSyncBooksFromExternalApi_RetriesChunkAfterConcurrentAuthorInsert() {
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(catalogSyncExecutor).execute(any());
+        upstreamReturns(externalBookDTO);
+        when(bookRepository.findContentHashesByExternalIdIn(anyCollection())).thenReturn(List.of());
+        doThrow(new DataIntegrityViolationException("uk_authors_name"))
+                .doAnswer(invocation -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null))
+                .when(transactionTemplate).execute(any());
+        
+        BookSyncReportDTO report = bookService.syncBooksFromExternalApi();
+        
+        verify(transactionTemplate, times(2)).execute(any());
+        assertEquals(1, report.getInserted());
+    }
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSyncBooksFromExternalApi_UnchangedBook() {
+        runSyncInline();
+        upstreamReturns(externalBookDTO);
+        when(bookRepository.findContentHashesByExternalIdIn(anyCollection()))
+                .thenReturn(List.of(hashView(258027L, BookService.contentHash(externalBookDTO))));
+        
+        BookSyncReportDTO report = bookService.syncBooksFromExternalApi();
+        
+        assertEquals(1, report.getUnchanged());
+        assertEquals(0, report.getUpdated());
+        // Sin cambios no se carga la entidad
+        verify(bookRepository, never()).findAllWithAuthorsByExternalIdIn(anyCollection());
+        verify(bookRepository, times(1)).saveAll(argThat(books -> ((List<Book>) books).isEmpty()));
+    }
+    
+    @Test
+    void testSyncBooksFromExternalApi_NotModified() {
+        when(externalBookService.streamCatalogIfModified(anyInt(), any())).thenReturn(ExternalCatalogDTO.notModified());
+        
+        BookSyncReportDTO report = bookService.syncBooksFromExternalApi();
+        
+        assertEquals(0, report.getInserted() + report.getUpdated() + report.getUnchanged());
+        verifyNoInteractions(bookRepository, transactionTemplate, catalogSnapshotService);
+        verify(externalBookService, never()).rememberValidators(any());
+    }
+    
+    @Test
+    void testSyncBooksFromExternalApi_CommitsInChunks() {
+        runSyncInline();
+        ExternalBookDTO second = new ExternalBookDTO(140081L, false, 85, "The Hitchhiker's Guide to the Galaxy", null, 1979, new BigDecimal("20.99"));
+        ExternalBookDTO third = new ExternalBookDTO(90150L, true, 250, "One Hundred Years of Solitude", null, 1967, new BigDecimal("22.99"));
+        upstreamReturns(externalBookDTO, second, third);
+        when(bookRepository.findContentHashesByExternalIdIn(anyCollection())).thenReturn(List.of());
+        
+        BookSyncReportDTO report = bookService.syncBooksFromExternalApi();
+        
+        assertEquals(3, report.getInserted());
+        verify(transactionTemplate, times(2)).execute(any());
+        verify(catalogSyncExecutor, times(2)).execute(any());
+        verify(catalogSnapshotService, times(2)).putAll(anyCollection());
+        verify(bookRepository, times(2)).findContentHashesByExternalIdIn(anyCollection());
+    }
+    
+    @Test
+    void testSyncBooksFromExternalApi_ChunkFailureStopsSync() {
+        runSyncInline();
+        upstreamReturns(externalBookDTO);
+        when(bookRepository.findContentHashesByExternalIdIn(anyCollection())).thenThrow(new RuntimeException("DB caída"));
+        
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> bookService.syncBooksFromExternalApi());
+        
+        assertEquals("DB caída", exception.getMessage());
+        verify(externalBookService, never()).rememberValidators(any());
+    }
+    
+    private ExternalBookDTO externalBook(Long id, String title) {
+        ExternalBookDTO book = new ExternalBookDTO();
+        book.setId(id);
+        book.setTitle(title);
+        book.setPrice(new BigDecimal("10.00"));
+        return book;
+    }
+    
+    private void refreshWith(int concurrency) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("refresh-test-");
+        executor.setConcurrencyLimit(concurrency);
+        ReflectionTestUtils.setField(bookService, "bookRefreshExecutor", executor);
+    }
+    
+    @Test
+    void testRefreshBooks_UpsertsFetchedBooksInOneBatch() {
+        runTransactionsInline();
+        refreshWith(10);
+        ExternalBookDTO hitchhiker = externalBook(140081L, "The Hitchhiker's Guide to the Galaxy");
+        when(externalBookService.fetchBookById(258027L)).thenReturn(externalBookDTO);
+        when(externalBookService.fetchBookById(140081L)).thenReturn(hitchhiker);
+        when(bookRepository.findContentHashesByExternalIdIn(anyCollection()))
+                .thenReturn(List.of(hashView(258027L, BookService.contentHash(externalBookDTO))));
+        
+        BookRefreshReportDTO report = bookService.refreshBooks(List.of(258027L, 140081L, 258027L));
+        
+        assertEquals(2, report.getRequested());
+        assertEquals(1, report.getInserted());
+        assertEquals(1, report.getUnchanged());
+        assertTrue(report.getFailed().isEmpty());
+        // Una sola transacción para todos los libros obtenidos
+        verify(transactionTemplate, times(1)).execute(any());
+        verify(bookRepository).saveAll(argThat((List<Book> books) ->
+                books.size() == 1 && books.get(0).getExternalId().equals(140081L)));
+    }
+    
+    @Test
+    void testRefreshBooks_ReportsFailuresAndTimeouts() {
+        runTransactionsInline();
+        refreshWith(10);
+        when(externalBookService.fetchBookById(258027L)).thenReturn(externalBookDTO);
+        when(externalBookService.fetchBookById(404L))
+                .thenThrow(new RuntimeException("Error al obtener el libro de la API externa: 404 Not Found"));
+        when(externalBookService.fetchBookById(504L))
+                .thenThrow(new RuntimeException("Tiempo de espera agotado al obtener el libro de la API externa"));
+        
+        BookRefreshReportDTO report = bookService.refreshBooks(List.of(258027L, 404L, 504L));
+        
+        assertEquals(1, report.getInserted());
+        assertEquals(2, report.getFailed().size());
+        assertEquals("Error al obtener el libro de la API externa: 404 Not Found", report.getFailed().get(404L));
+        assertTrue(report.getFailed().get(504L).startsWith("Tiempo de espera agotado"));
+    }
+    
+    @Test
+    void testRefreshBooks_CallsUpstreamConcurrently() {
+        runTransactionsInline();
+        refreshWith(100);
+        List<Long> ids = LongStream.rangeClosed(1, 100).boxed().toList();
+        when(externalBookService.fetchBookById(anyLong())).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            Long id = invocation.getArgument(0);
+            return externalBook(id, "Libro " + id);
+        });
+        
+        BookRefreshReportDTO report = bookService.refreshBooks(ids);
+        
+        assertEquals(100, report.getInserted());
+        // En serie serían 20 segundos; en paralelo, cerca de una sola llamada
+        assertTrue(report.getElapsedMillis() < 5000, () -> "Demoró " + report.getElapsedMillis() + " ms");
+    }
+    
+    @Test
+    void testContentHash_IgnoresPriceScale() {
+        ExternalBookDTO sameBook = new ExternalBookDTO(258027L, null, null, "The Lord of the Rings", null, null, new BigDecimal("15.990"));
+        
+        assertEquals(BookService.contentHash(externalBookDTO), BookService.contentHash(sameBook));
+        sameBook.setPrice(new BigDecimal("16.99"));
+        assertNotEquals(BookService.contentHash(externalBookDTO), BookService.contentHash(sameBook));
     }
     
     @Test
@@ -78,12 +356,28 @@ class BookServiceTest {
         book2.setExternalId(140081L);
         book2.setTitle("The Hitchhiker's Guide to the Galaxy");
         
-        when(bookRepository.findAll()).thenReturn(Arrays.asList(testBook, book2));
+        testBook.setAuthors(List.of(new Author(1L, "J. R. R. Tolkien")));
+        
+        when(bookRepository.findAllWithAuthors()).thenReturn(Arrays.asList(testBook, book2));
         
         List<BookResponseDTO> result = bookService.getAllBooks();
         
         assertNotNull(result);
         assertEquals(2, result.size());
+        assertEquals(List.of("J. R. R. Tolkien"), result.get(0).getAuthorName());
+        assertEquals(List.of(), result.get(1).getAuthorName());
+    }
+    
+    @Test
+    void testGetCatalogSnapshot_LoadsOnlyOnce() {
+        CatalogSnapshotService.Snapshot snapshot = new CatalogSnapshotService.Snapshot(1L, "\"v1\"", "[]".getBytes());
+        when(catalogSnapshotService.isLoaded()).thenReturn(true);
+        when(catalogSnapshotService.getSnapshot()).thenReturn(snapshot);
+        
+        CatalogSnapshotService.Snapshot result = bookService.getCatalogSnapshot();
+        
+        assertSame(snapshot, result);
+        verifyNoInteractions(bookRepository);
     }
     
     @Test
@@ -108,13 +402,18 @@ class BookServiceTest {
     
     @Test
     void testUpdateStock_Success() {
+        when(bookRepository.updateStockQuantity(258027L, 20)).thenReturn(1);
+        testBook.setStockQuantity(20);
+        testBook.setAvailableQuantity(15); // Leído después de la actualización
         when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
-        when(bookRepository.save(any(Book.class))).thenReturn(testBook);
         
         BookResponseDTO result = bookService.updateStock(258027L, 20);
         
         assertNotNull(result);
-        verify(bookRepository, times(1)).save(any(Book.class));
+        assertEquals(15, result.getAvailableQuantity());
+        verify(bookRepository, times(1)).updateStockQuantity(258027L, 20);
+        verify(bookRepository, never()).save(any(Book.class));
+        verify(catalogSnapshotService, times(1)).putAll(List.of(result));
     }
     
     @Test
@@ -122,32 +421,78 @@ class BookServiceTest {
         testBook.setStockQuantity(10);
         testBook.setAvailableQuantity(5); // 5 reservados
         
+        when(bookRepository.updateStockQuantity(258027L, 3)).thenReturn(0);
         when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
         
-        assertThrows(RuntimeException.class, () -> {
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> {
             bookService.updateStock(258027L, 3); // Menos que los reservados
         });
+        assertEquals("No se puede reducir el stock por debajo de los libros reservados: 5", exception.getMessage());
+        verify(catalogSnapshotService, never()).putAll(any());
+    }
+    
+    @Test
+    void testUpdateStock_NotFound() {
+        when(bookRepository.updateStockQuantity(258027L, 20)).thenReturn(0);
+        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.empty());
+        
+        assertThrows(RuntimeException.class, () -> bookService.updateStock(258027L, 20));
     }
     
     @Test
     void testDecreaseAvailableQuantity_Success() {
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
-        when(bookRepository.save(any(Book.class))).thenReturn(testBook);
+        when(bookRepository.decrementAvailableQuantity(258027L)).thenReturn(1);
         
         bookService.decreaseAvailableQuantity(258027L);
         
-        verify(bookRepository, times(1)).save(any(Book.class));
+        verify(bookRepository, times(1)).decrementAvailableQuantity(258027L);
+        verify(bookRepository, never()).save(any(Book.class));
+        verify(catalogSnapshotService, times(1)).adjustAvailableQuantity(258027L, -1);
     }
     
     @Test
     void testDecreaseAvailableQuantity_NoStock() {
-        testBook.setAvailableQuantity(0);
+        when(bookRepository.decrementAvailableQuantity(258027L)).thenReturn(0);
+        when(bookRepository.existsByExternalId(258027L)).thenReturn(true);
         
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> {
+            bookService.decreaseAvailableQuantity(258027L);
+        });
         
-        assertThrows(RuntimeException.class, () -> {
+        assertTrue(exception.getMessage().contains("No hay libros disponibles"));
+    }
+    
+    @Test
+    void testDecreaseAvailableQuantity_NotFound() {
+        when(bookRepository.decrementAvailableQuantity(258027L)).thenReturn(0);
+        when(bookRepository.existsByExternalId(258027L)).thenReturn(false);
+        
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> {
             bookService.decreaseAvailableQuantity(258027L);
         });
+        
+        assertTrue(exception.getMessage().contains("Libro no encontrado"));
+    }
+    
+    @Test
+    void testIncreaseAvailableQuantity_Success() {
+        when(bookRepository.incrementAvailableQuantity(258027L)).thenReturn(1);
+        
+        bookService.increaseAvailableQuantity(258027L);
+        
+        verify(bookRepository, times(1)).incrementAvailableQuantity(258027L);
+        verify(catalogSnapshotService, times(1)).adjustAvailableQuantity(258027L, 1);
+    }
+    
+    @Test
+    void testIncreaseAvailableQuantity_ExceedsStock() {
+        when(bookRepository.incrementAvailableQuantity(258027L)).thenReturn(0);
+        when(bookRepository.existsByExternalId(258027L)).thenReturn(true);
+        
+        assertThrows(RuntimeException.class, () -> {
+            bookService.increaseAvailableQuantity(258027L);
+        });
+        verify(catalogSnapshotService, never()).adjustAvailableQuantity(anyLong(), anyInt());
     }
 }
 
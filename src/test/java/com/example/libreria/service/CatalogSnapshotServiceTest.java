@@ -0,0 +1,114 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.BookResponseDTO;
+import com.example.libreria.model.Money;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogSnapshotServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private CatalogSnapshotService catalogSnapshotService;
+    private BookResponseDTO lordOfTheRings;
+    private BookResponseDTO hitchhiker;
+
+    @BeforeEach
+    void setUp() {
+        catalogSnapshotService = new CatalogSnapshotService(objectMapper, new BookSearchService());
+        lordOfTheRings = new BookResponseDTO(258027L, "The Lord of the Rings", List.of("J. R. R. Tolkien"),
+                1954, 120, true, Money.of("15.99"), 10, 8);
+        hitchhiker = new BookResponseDTO(140081L, "The Hitchhiker's Guide to the Galaxy", List.of("Douglas Adams"),
+                1979, 85, false, Money.of("20.99"), 15, 12);
+    }
+
+    private List<BookResponseDTO> read(CatalogSnapshotService.Snapshot snapshot) throws Exception {
+        return objectMapper.readValue(snapshot.getJson(), new TypeReference<List<BookResponseDTO>>() {});
+    }
+
+    @Test
+    void testReplaceAll_SerializesCatalogOrderedById() throws Exception {
+        catalogSnapshotService.replaceAll(List.of(lordOfTheRings, hitchhiker));
+
+        List<BookResponseDTO> books = read(catalogSnapshotService.getSnapshot());
+
+        assertTrue(catalogSnapshotService.isLoaded());
+        assertEquals(List.of(hitchhiker, lordOfTheRings), books);
+    }
+
+    @Test
+    void testGetSnapshot_ReusesBytesWhileUnchanged() {
+        catalogSnapshotService.replaceAll(List.of(lordOfTheRings));
+
+        CatalogSnapshotService.Snapshot first = catalogSnapshotService.getSnapshot();
+        CatalogSnapshotService.Snapshot second = catalogSnapshotService.getSnapshot();
+
+        assertSame(first, second);
+    }
+
+    @Test
+    void testAdjustAvailableQuantity_PublishesNewVersion() throws Exception {
+        catalogSnapshotService.replaceAll(List.of(lordOfTheRings, hitchhiker));
+        CatalogSnapshotService.Snapshot before = catalogSnapshotService.getSnapshot();
+
+        catalogSnapshotService.adjustAvailableQuantity(258027L, -1);
+        CatalogSnapshotService.Snapshot after = catalogSnapshotService.getSnapshot();
+
+        assertTrue(after.getVersion() > before.getVersion());
+        assertNotEquals(before.getEtag(), after.getEtag());
+        assertEquals(7, read(after).get(1).getAvailableQuantity());
+    }
+
+    @Test
+    void testPutAll_IgnoredUntilLoaded() {
+        catalogSnapshotService.putAll(List.of(lordOfTheRings));
+
+        assertFalse(catalogSnapshotService.isLoaded());
+        assertEquals("[]", new String(catalogSnapshotService.getSnapshot().getJson()));
+    }
+
+    @Test
+    void testPutAll_AddsAndReplacesBooks() throws Exception {
+        catalogSnapshotService.replaceAll(List.of(lordOfTheRings));
+        BookResponseDTO updated = new BookResponseDTO(258027L, "The Lord of the Rings", List.of("J. R. R. Tolkien"),
+                1954, 121, true, Money.of("17.99"), 10, 8);
+
+        catalogSnapshotService.putAll(List.of(updated, hitchhiker));
+
+        assertEquals(List.of(hitchhiker, updated), read(catalogSnapshotService.getSnapshot()));
+    }
+
+    @Test
+    void testLoad_ReappliesChangesCommittedWhileReading() throws Exception {
+        catalogSnapshotService.load(() -> {
+            // Confirmados después de leer la base, antes de reemplazar el catálogo
+            catalogSnapshotService.adjustAvailableQuantity(258027L, -1);
+            catalogSnapshotService.putAll(List.of(hitchhiker));
+            return List.of(lordOfTheRings);
+        });
+
+        List<BookResponseDTO> catalog = read(catalogSnapshotService.getSnapshot());
+        assertEquals(2, catalog.size());
+        assertEquals(hitchhiker, catalog.get(0));
+        assertEquals(7, catalog.get(1).getAvailableQuantity());
+    }
+
+    @Test
+    void testGetBooks_ReturnsCopies() throws Exception {
+        catalogSnapshotService.replaceAll(List.of(lordOfTheRings));
+        BookResponseDTO book = catalogSnapshotService.getBooks(List.of(258027L)).get(0);
+
+        catalogSnapshotService.adjustAvailableQuantity(258027L, -1);
+        lordOfTheRings.setAvailableQuantity(0);
+
+        assertEquals(8, book.getAvailableQuantity());
+        assertEquals(7, read(catalogSnapshotService.getSnapshot()).get(0).getAvailableQuantity());
+        assertEquals(7, catalogSnapshotService.getBooks(List.of(258027L)).get(0).getAvailableQuantity());
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.libreria.service;
+
+import com.example.libreria.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmailFilterServiceTest {
+    
+    @Mock
+    private UserRepository userRepository;
+    
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    
+    private EmailFilterService emailFilterService;
+    
+    @BeforeEach
+    void setUp() {
+        emailFilterService = new EmailFilterService(userRepository, new TransactionTemplate(transactionManager));
+    }
+    
+    private void loadUsers(int count) {
+        when(userRepository.count()).thenReturn((long) count);
+        when(userRepository.streamAllEmails()).thenAnswer(invocation ->
+                IntStream.range(0, count).mapToObj(i -> "lector-" + i + "@example.com"));
+        emailFilterService.reload();
+    }
+    
+    @Test
+    void testMightExist_TrueUntilLoaded() {
+        assertTrue(emailFilterService.mightExist("juan@example.com"));
+    }
+    
+    @Test
+    void testMightExist_NoFalseNegativesAndFewFalsePositives() {
+        loadUsers(10_000);
+        
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(emailFilterService.mightExist("lector-" + i + "@example.com"));
+        }
+        long falsePositives = IntStream.range(0, 10_000)
+                .filter(i -> emailFilterService.mightExist("otro-" + i + "@example.com"))
+                .count();
+        // Con la mitad de la capacidad ocupada la tasa queda bastante por debajo del 1%
+        assertTrue(falsePositives < 100, () -> "Falsos positivos: " + falsePositives);
+    }
+    
+    @Test
+    void testMightExist_IgnoresCaseAndSurroundingSpaces() {
+        when(userRepository.count()).thenReturn(1L);
+        when(userRepository.streamAllEmails()).thenReturn(Stream.of("Juan.Perez@Example.com"));
+        emailFilterService.reload();
+        
+        assertTrue(emailFilterService.mightExist(" juan.perez@example.COM "));
+    }
+    
+    @Test
+    void testAdd_NewEmailIsFound() {
+        loadUsers(0);
+        assertFalse(emailFilterService.mightExist("nuevo@example.com"));
+        
+        emailFilterService.add("nuevo@example.com");
+        
+        assertTrue(emailFilterService.mightExist("nuevo@example.com"));
+    }
+    
+    @Test
+    void testAdd_ReloadsWhenFull() {
+        loadUsers(10);
+        
+        // Capacidad mínima de 1024 emails, incluidos los 10 cargados
+        for (int i = 0; i < EmailFilterService.MIN_CAPACITY - 10; i++) {
+            emailFilterService.add("alta-" + i + "@example.com");
+        }
+        
+        verify(userRepository, times(2)).streamAllEmails();
+    }
+    
+    @Test
+    void testMarkStale_ReloadsAfterManyRemovals() {
+        loadUsers(10);
+        
+        for (int i = 0; i <= EmailFilterService.MIN_CAPACITY / 2; i++) {
+            emailFilterService.markStale();
+        }
+        
+        verify(userRepository, times(2)).streamAllEmails();
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.EntityCacheStatsDTO;
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Money;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.ReservationRepository;
+import com.example.libreria.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class EntityCacheTest {
+
+    private static final long BOOK_ID = 590000L;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private EntityCacheService entityCacheService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Statistics statistics;
+    private Long userId;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        User existing = userRepository.findByEmail("cache@example.com").orElse(null);
+        if (existing != null) {
+            userId = existing.getId();
+            return;
+        }
+        Book book = new Book();
+        book.setExternalId(BOOK_ID);
+        book.setTitle("Libro cacheado");
+        book.setPrice(Money.of("10.00"));
+        book.setStockQuantity(2);
+        book.setAvailableQuantity(2);
+        bookRepository.save(book);
+        User user = new User();
+        user.setName("Lector cacheado");
+        user.setEmail("cache@example.com");
+        userId = userRepository.save(user).getId();
+    }
+
+    private ReservationResponseDTO reserve() {
+        ReservationRequestDTO request = new ReservationRequestDTO();
+        request.setUserId(userId);
+        request.setBookExternalId(BOOK_ID);
+        request.setRentalDays(7);
+        request.setStartDate(LocalDate.of(1991, 6, 1));
+        return reservationService.createReservation(request);
+    }
+
+    private void giveBack(ReservationResponseDTO reservation) {
+        reservationService.returnBook(reservation.getId(), new ReturnBookRequestDTO(LocalDate.of(1991, 6, 8)));
+    }
+
+    private long hits(String region) {
+        return statistics.getDomainDataRegionStatistics(region).getHitCount();
+    }
+
+    @Test
+    void testReservationsReadUserAndBookFromCacheWithoutStaleStock() {
+        ReservationResponseDTO first = reserve();
+        long bookHits = hits("books");
+        long userHits = hits("users");
+
+        ReservationResponseDTO second = reserve();
+        assertEquals(bookHits + 1, hits("books"));
+        assertEquals(userHits + 1, hits("users"));
+
+        // La entidad cacheada sigue diciendo que hay copias; la base decide que no
+        RuntimeException exception = assertThrows(RuntimeException.class, this::reserve);
+        assertTrue(exception.getMessage().contains("No hay copias disponibles"));
+        assertEquals(0, bookService.getBookByExternalId(BOOK_ID).getAvailableQuantity());
+
+        // Y al devolver una, la siguiente reserva la encuentra aunque la caché diga cero
+        giveBack(first);
+        ReservationResponseDTO third = reserve();
+        assertEquals(0, bookService.getBookByExternalId(BOOK_ID).getAvailableQuantity());
+
+        giveBack(second);
+        giveBack(third);
+        assertEquals(2, bookService.getBookByExternalId(BOOK_ID).getAvailableQuantity());
+
+        List<EntityCacheStatsDTO> stats = entityCacheService.getStats();
+        assertEquals(List.of("books", "users"), stats.stream().map(EntityCacheStatsDTO::getRegion).toList());
+        assertTrue(stats.get(0).getHits() > 0);
+    }
+
+    @Test
+    void testOverdueSweepKeepsCachedEntities() {
+        transactionTemplate.executeWithoutResult(status -> bookRepository.findById(BOOK_ID).orElseThrow());
+        assertTrue(entityManagerFactory.getCache().contains(Book.class, BOOK_ID));
+
+        // La sentencia nativa del barrido declara que solo toca reservations
+        transactionTemplate.executeWithoutResult(status ->
+                reservationRepository.markOverdue(LocalDate.of(1991, 1, 1), new BigDecimal("0.15"), 0, 0));
+
+        assertTrue(entityManagerFactory.getCache().contains(Book.class, BOOK_ID));
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ExternalBookDTO;
+import com.example.libreria.dto.ExternalCatalogDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.headerDoesNotExist;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withException;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class ExternalBookServiceTest {
+    
+    private static final String API_URL = "http://books.test/books";
+    private static final String CATALOG_JSON = """
+            [{"id": 258027, "has_fulltext": true, "edition_count": 120, "title": "The Lord of the Rings",
+              "author_name": ["J. R. R. Tolkien"], "first_publish_year": 1954, "price": 15.99, "rating": 4.9},
+             {"id": 140081, "has_fulltext": false, "edition_count": 85, "title": "The Hitchhiker's Guide to the Galaxy",
+              "author_name": ["Douglas Adams"], "first_publish_year": 1979, "price": 20.99},
+             {"id": 90150, "has_fulltext": true, "edition_count": 250, "title": "One Hundred Years of Solitude",
+              "author_name": ["Gabriel García Márquez"], "first_publish_year": 1967, "price": 22.99}]
+            """;
+    
+    private MockRestServiceServer server;
+    private ExternalBookService externalBookService;
+    
+    @BeforeEach
+    void setUp() {
+        RestTemplate restTemplate = new RestTemplate();
+        server = MockRestServiceServer.bindTo(restTemplate).build();
+        externalBookService = new ExternalBookService(restTemplate, restTemplate, Jackson2ObjectMapperBuilder.json().build());
+        ReflectionTestUtils.setField(externalBookService, "externalApiUrl", API_URL);
+    }
+    
+    @Test
+    void testStreamCatalogIfModified_FirstSyncIsUnconditional() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag("\"v1\"");
+        server.expect(requestTo(API_URL))
+                .andExpect(headerDoesNotExist(HttpHeaders.IF_NONE_MATCH))
+                .andRespond(withSuccess(CATALOG_JSON, MediaType.APPLICATION_JSON).headers(headers));
+        
+        List<List<ExternalBookDTO>> chunks = new ArrayList<>();
+        ExternalCatalogDTO catalog = externalBookService.streamCatalogIfModified(2, chunks::add);
+        
+        assertFalse(catalog.isNotModified());
+        assertEquals(3, catalog.getBookCount());
+        assertEquals("\"v1\"", catalog.getEtag());
+        // Bloques de a 2: el último queda incompleto
+        assertEquals(List.of(2, 1), chunks.stream().map(List::size).toList());
+        assertEquals("The Lord of the Rings", chunks.get(0).get(0).getTitle());
+        assertEquals(List.of("J. R. R. Tolkien"), chunks.get(0).get(0).getAuthorName());
+        assertEquals(90150L, chunks.get(1).get(0).getId());
+        server.verify();
+    }
+    
+    @Test
+    void testStreamCatalogIfModified_SendsValidatorsAndHandles304() {
+        externalBookService.rememberValidators(
+                new ExternalCatalogDTO(false, 3, "\"v1\"", "Sat, 17 Oct 2026 10:00:00 GMT"));
+        server.expect(requestTo(API_URL))
+                .andExpect(header(HttpHeaders.IF_NONE_MATCH, "\"v1\""))
+                .andExpect(header(HttpHeaders.IF_MODIFIED_SINCE, "Sat, 17 Oct 2026 10:00:00 GMT"))
+                .andRespond(withStatus(HttpStatus.NOT_MODIFIED));
+        
+        List<List<ExternalBookDTO>> chunks = new ArrayList<>();
+        ExternalCatalogDTO catalog = externalBookService.streamCatalogIfModified(2, chunks::add);
+        
+        assertTrue(catalog.isNotModified());
+        assertTrue(chunks.isEmpty());
+        server.verify();
+    }
+    
+    @Test
+    void testStreamCatalogIfModified_ServerError() {
+        server.expect(requestTo(API_URL)).andRespond(withStatus(HttpStatus.BAD_GATEWAY));
+        
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> externalBookService.streamCatalogIfModified(2, chunk -> {}));
+        
+        assertTrue(exception.getMessage().contains("Error al obtener libros de la API externa"));
+    }
+    
+    @Test
+    void testStreamCatalogIfModified_NotAnArray() {
+        server.expect(requestTo(API_URL)).andRespond(withSuccess("{\"error\": true}", MediaType.APPLICATION_JSON));
+        
+        assertThrows(RuntimeException.class, () -> externalBookService.streamCatalogIfModified(2, chunk -> {}));
+    }
+    
+    @Test
+    void testFetchBookById_ReportsTimeout() {
+        server.expect(requestTo(API_URL + "/258027")).andRespond(withException(new SocketTimeoutException("Read timed out")));
+        
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> externalBookService.fetchBookById(258027L));
+        
+        assertEquals("Tiempo de espera agotado al obtener el libro de la API externa", exception.getMessage());
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Money;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+@ActiveProfiles("test")
+class LibraryMetricsTest {
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private LibraryMetrics libraryMetrics;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private double count(String event) {
+        return meterRegistry.get("library.reservations").tag("event", event).counter().count();
+    }
+
+    @Test
+    void testReservationCountersAndGauges() {
+        Book book = new Book();
+        book.setExternalId(570000L);
+        book.setTitle("Libro medido");
+        book.setPrice(Money.of("10.00"));
+        book.setStockQuantity(1);
+        book.setAvailableQuantity(1);
+        bookRepository.save(book);
+        User user = new User();
+        user.setName("Lector medido");
+        user.setEmail("metrics@example.com");
+        user = userRepository.save(user);
+        double created = count("created");
+        double returned = count("returned");
+        double rejected = count("rejected_no_stock");
+
+        ReservationRequestDTO request = new ReservationRequestDTO();
+        request.setUserId(user.getId());
+        request.setBookExternalId(570000L);
+        request.setRentalDays(7);
+        request.setStartDate(LocalDate.of(1987, 3, 1));
+        ReservationResponseDTO reservation = reservationService.createReservation(request);
+        // La única copia ya está prestada
+        assertThrows(RuntimeException.class, () -> reservationService.createReservation(request));
+        // Devolución tardía: la reserva queda en OVERDUE pero ya no está abierta
+        reservationService.returnBook(reservation.getId(), new ReturnBookRequestDTO(LocalDate.of(1987, 3, 20)));
+
+        assertEquals(created + 1, count("created"));
+        assertEquals(returned + 1, count("returned"));
+        assertEquals(rejected + 1, count("rejected_no_stock"));
+
+        libraryMetrics.refreshGauges();
+        Long availableCopies = jdbcTemplate.queryForObject("SELECT SUM(available_quantity) FROM books", Long.class);
+        assertEquals(availableCopies.doubleValue(), meterRegistry.get("library.books.available.copies").gauge().value());
+        Long openOverdue = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM reservations WHERE status = 'OVERDUE' AND actual_return_date IS NULL", Long.class);
+        assertEquals(openOverdue.doubleValue(),
+                meterRegistry.get("library.reservations.open").tag("status", "overdue").gauge().value());
+    }
+
+    @Test
+    void testPrometheusEndpoint() throws Exception {
+        userService.getAllUsers();
+
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertTrue(scrape.contains("library_service_seconds_count{"), scrape);
+        assertTrue(scrape.contains("method=\"getAllUsers\""), scrape);
+        assertTrue(scrape.contains("library_reservations_total{application=\"libreria\",event=\"created\"}"), scrape);
+        assertTrue(scrape.contains("library_reservations_open{"), scrape);
+        assertTrue(scrape.contains("hikaricp_connections_active"), scrape);
+        assertTrue(scrape.contains("hibernate_second_level_cache_requests_total{"), scrape);
+    }
+}
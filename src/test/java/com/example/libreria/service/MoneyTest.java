@@ -0,0 +1,84 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.BookResponseDTO;
+import com.example.libreria.model.Money;
+import com.example.libreria.model.MoneyConverter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    private final ReservationService reservationService = new ReservationService(null, null, null, null, null, null);
+
+    // Fórmulas anteriores con BigDecimal, usadas como referencia
+    private BigDecimal bigDecimalTotalFee(BigDecimal dailyRate, int rentalDays) {
+        return dailyRate.multiply(new BigDecimal(rentalDays)).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private BigDecimal bigDecimalLateFee(BigDecimal bookPrice, long daysLate) {
+        return bookPrice.multiply(new BigDecimal("0.15"))
+                .multiply(new BigDecimal(daysLate))
+                .setScale(2, RoundingMode.HALF_UP);
+    }
+
+    @Test
+    void testFees_MatchBigDecimalFormulas() {
+        for (long cents = 0; cents <= 20_000; cents += 7) {
+            BigDecimal price = BigDecimal.valueOf(cents, 2);
+            for (int days = 1; days <= 45; days++) {
+                assertEquals(bigDecimalTotalFee(price, days),
+                        Money.ofCents(reservationService.calculateTotalFee(cents, days)).toBigDecimal(),
+                        () -> "total " + price);
+                assertEquals(bigDecimalLateFee(price, days),
+                        Money.ofCents(reservationService.calculateLateFee(cents, days)).toBigDecimal(),
+                        () -> "recargo " + price);
+            }
+        }
+    }
+
+    @Test
+    void testOf_RoundsHalfUpToCents() {
+        assertEquals(1599, Money.of("15.99").getCents());
+        assertEquals(1600, Money.of("15.995").getCents());
+        assertEquals(1599, Money.of("15.9949").getCents());
+        assertEquals(-6, Money.of("-0.055").getCents());
+        assertSame(Money.ZERO, Money.of("0.00"));
+    }
+
+    @Test
+    void testToString_PrintsTwoDecimals() {
+        assertEquals("15.99", Money.of("15.99").toString());
+        assertEquals("7.00", Money.ofCents(700).toString());
+        assertEquals("0.05", Money.ofCents(5).toString());
+        assertEquals("-0.05", Money.ofCents(-5).toString());
+    }
+
+    @Test
+    void testJson_WrittenAsNumber() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        BookResponseDTO book = new BookResponseDTO(258027L, "The Lord of the Rings", List.of("J. R. R. Tolkien"),
+                1954, 120, true, Money.of("15.90"), 10, 8);
+
+        String json = objectMapper.writeValueAsString(book);
+
+        assertTrue(json.contains("\"price\":15.90"), json);
+        assertEquals(book, objectMapper.readValue(json, BookResponseDTO.class));
+        assertEquals(Money.of("22.5"), objectMapper.readValue("22.5", Money.class));
+    }
+
+    @Test
+    void testConverter_MapsToDecimalColumn() {
+        MoneyConverter converter = new MoneyConverter();
+
+        assertEquals(new BigDecimal("15.99"), converter.convertToDatabaseColumn(Money.of("15.99")));
+        assertEquals(Money.of("15.99"), converter.convertToEntityAttribute(new BigDecimal("15.990")));
+        assertNull(converter.convertToDatabaseColumn(null));
+        assertNull(converter.convertToEntityAttribute(null));
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.OverdueSweepReportDTO;
+import com.example.libreria.dto.ReservationResponseDTO;
+import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Money;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.ReservationRepository;
+import com.example.libreria.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class OverdueSweepServiceTest {
+
+    // Fechas en el pasado lejano: el barrido no toca reservas de otros tests
+    private static final LocalDate START = LocalDate.of(2020, 3, 1);
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Book book;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        book = bookRepository.findById(664001L).orElseGet(() -> {
+            Book newBook = new Book();
+            newBook.setExternalId(664001L);
+            newBook.setTitle("Libro vencido");
+            newBook.setPrice(Money.of("12.50"));
+            newBook.setStockQuantity(100);
+            // Copias prestadas a las reservas que el test inserta directamente
+            newBook.setAvailableQuantity(50);
+            return bookRepository.save(newBook);
+        });
+        user = userRepository.findByEmail("overdue@example.com").orElseGet(() -> {
+            User newUser = new User();
+            newUser.setName("Lector moroso");
+            newUser.setEmail("overdue@example.com");
+            return userRepository.save(newUser);
+        });
+    }
+
+    private OverdueSweepService sweeperAt(LocalDate date) {
+        Clock clock = Clock.fixed(date.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        OverdueSweepService sweeper = new OverdueSweepService(reservationRepository, transactionTemplate, clock);
+        ReflectionTestUtils.setField(sweeper, "chunkSize", 2);
+        return sweeper;
+    }
+
+    private Reservation reservation(LocalDate startDate, LocalDate actualReturnDate, Reservation.ReservationStatus status) {
+        Reservation reservation = new Reservation();
+        reservation.setUser(user);
+        reservation.setBook(book);
+        reservation.setRentalDays(7);
+        reservation.setStartDate(startDate);
+        reservation.setExpectedReturnDate(startDate.plusDays(7));
+        reservation.setActualReturnDate(actualReturnDate);
+        reservation.setDailyRate(book.getPrice());
+        reservation.setTotalFee(Money.of("87.50"));
+        reservation.setStatus(status);
+        return reservation;
+    }
+
+    private Reservation reload(Reservation reservation) {
+        return reservationRepository.findById(reservation.getId()).orElseThrow();
+    }
+
+    @Test
+    void testSweep_MarksOpenReservationsPastDueAndAccruesFee() {
+        List<Reservation> saved = reservationRepository.saveAll(List.of(
+                reservation(START, null, Reservation.ReservationStatus.ACTIVE),
+                reservation(START.minusDays(3), null, Reservation.ReservationStatus.ACTIVE),
+                reservation(START.plusDays(5), null, Reservation.ReservationStatus.ACTIVE),
+                reservation(START, START.plusDays(7), Reservation.ReservationStatus.RETURNED),
+                reservation(START.minusDays(3), START.plusDays(7), Reservation.ReservationStatus.OVERDUE)));
+        Reservation dueTwoDaysAgo = saved.get(0);
+        Reservation dueFiveDaysAgo = saved.get(1);
+        Reservation notDueYet = saved.get(2);
+
+        OverdueSweepReportDTO report = sweeperAt(START.plusDays(9)).sweep();
+
+        assertEquals(START.plusDays(9), report.getAsOf());
+        assertEquals(2, report.getUpdated());
+        assertTrue(report.getChunks() >= 1);
+        assertEquals(Reservation.ReservationStatus.OVERDUE, reload(dueTwoDaysAgo).getStatus());
+        // 12.50 × 0.15 × 2 días
+        assertEquals(Money.of("3.75"), reload(dueTwoDaysAgo).getAccruedLateFee());
+        // 12.50 × 0.15 × 5 días = 9.375 -> 9.38
+        assertEquals(Money.of("9.38"), reload(dueFiveDaysAgo).getAccruedLateFee());
+        assertEquals(Reservation.ReservationStatus.ACTIVE, reload(notDueYet).getStatus());
+        assertEquals(Reservation.ReservationStatus.RETURNED, reload(saved.get(3)).getStatus());
+        assertEquals(Money.ZERO, reload(saved.get(4)).getAccruedLateFee());
+
+        List<Long> overdueIds = reservationService.getOverdueReservations(dueTwoDaysAgo.getId() - 1, 200).getContent()
+                .stream().map(ReservationResponseDTO::getId).toList();
+        assertEquals(List.of(dueTwoDaysAgo.getId(), dueFiveDaysAgo.getId()), overdueIds);
+
+        // Al día siguiente la multa acumulada crece un día más
+        sweeperAt(START.plusDays(10)).sweep();
+        assertEquals(Money.of("5.63"), reload(dueTwoDaysAgo).getAccruedLateFee());
+
+        // Una reserva vencida se puede devolver y su multa queda fija
+        ReservationResponseDTO returned = reservationService.returnBook(dueTwoDaysAgo.getId(),
+                new ReturnBookRequestDTO(START.plusDays(11)));
+        assertEquals(Money.of("7.50"), returned.getLateFee());
+        assertEquals(Money.of("7.50"), returned.getAccruedLateFee());
+        assertEquals(START.plusDays(11), returned.getActualReturnDate());
+        sweeperAt(START.plusDays(12)).sweep();
+        assertEquals(Money.of("7.50"), reload(dueTwoDaysAgo).getAccruedLateFee());
+    }
+
+    @Test
+    void testSweep_NothingToDo() {
+        OverdueSweepReportDTO report = sweeperAt(LocalDate.of(2000, 1, 1)).sweep();
+
+        assertEquals(0, report.getUpdated());
+        assertEquals(0, report.getChunks());
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.RevenueReportDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Money;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.AuthorRepository;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.ReservationRepository;
+import com.example.libreria.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Ejecuta cada consulta de los repositorios, captura con datasource-proxy el SQL que
+ * realmente llega a la base (con sus parámetros) y corre EXPLAIN en H2 sobre él. Falla si
+ * alguna sentencia recorre una tabla completa o si ninguna usa el índice esperado. Cada
+ * consulta corre en una transacción que se revierte: las sentencias de escritura no dejan rastro.
+ * Antes se cargan {@link #FIXTURE_RESERVATIONS} reservas: con la tabla casi vacía H2 elige
+ * entre índices equivalentes por descarte y el plan no es el que tendría con datos.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryPlanTest {
+
+    private static final long BOOK_A = 970001L;
+    private static final long BOOK_B = 970002L;
+    private static final long USER_ID = 970001L;
+    private static final long FIXTURE_FIRST_ID = 970_000_000L;
+    private static final int FIXTURE_RESERVATIONS = 20_000;
+    private static final LocalDate TODAY = LocalDate.of(2024, 1, 1);
+    private static final Pattern OLD_TABLE = Pattern.compile("OLD TABLE \\((DELETE .*?)\\)", Pattern.CASE_INSENSITIVE);
+
+    // Sentencias ejecutadas por el hilo del test mientras se captura
+    private static final ThreadLocal<List<CapturedStatement>> CAPTURED = new ThreadLocal<>();
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private RevenueAnalyticsService revenueAnalyticsService;
+
+    record CapturedStatement(String sql, List<Object> parameters) {
+    }
+
+    @BeforeAll
+    void captureStatements() {
+        ProxyDataSource proxy = assertInstanceOf(ProxyDataSource.class, dataSource);
+        proxy.getProxyConfig().getQueryListener().addListener(new QueryExecutionListener() {
+            @Override
+            public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            }
+
+            @Override
+            public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+                List<CapturedStatement> captured = CAPTURED.get();
+                if (captured != null) {
+                    queryInfoList.forEach(query -> captured.add(new CapturedStatement(query.getQuery(), parameters(query))));
+                }
+            }
+        });
+    }
+
+    // Una de cada diez reservas vencida sin devolver, dos activas y el resto devueltas
+    @BeforeAll
+    void insertFixture() {
+        jdbcTemplate.update("INSERT INTO users (id, name, email, created_at) " +
+                "VALUES (?, 'Lector del plan', 'query-plan@example.com', CURRENT_TIMESTAMP)", USER_ID);
+        jdbcTemplate.update("INSERT INTO books (external_id, title, price, stock_quantity, available_quantity) " +
+                "VALUES (?, 'Libro del plan A', 10.00, 5, 5), (?, 'Libro del plan B', 10.00, 5, 5)", BOOK_A, BOOK_B);
+        jdbcTemplate.update("INSERT INTO reservations (id, user_id, book_external_id, rental_days, start_date, " +
+                "expected_return_date, actual_return_date, daily_rate, status, created_at) " +
+                "SELECT ? + x, ?, ?, 7, DATE '2023-01-01', DATE '2023-01-08', " +
+                "CASE WHEN MOD(x, 10) > 2 THEN DATE '2023-01-08' END, 1.00, " +
+                "CASE MOD(x, 10) WHEN 0 THEN 'OVERDUE' WHEN 1 THEN 'ACTIVE' WHEN 2 THEN 'ACTIVE' ELSE 'RETURNED' END, " +
+                "CURRENT_TIMESTAMP FROM SYSTEM_RANGE(1, ?)",
+                FIXTURE_FIRST_ID, USER_ID, BOOK_A, FIXTURE_RESERVATIONS);
+        jdbcTemplate.execute("ANALYZE TABLE reservations");
+    }
+
+    @AfterAll
+    void deleteFixture() {
+        jdbcTemplate.update("DELETE FROM reservations WHERE id > ?", FIXTURE_FIRST_ID);
+        jdbcTemplate.update("DELETE FROM books WHERE external_id IN (?, ?)", BOOK_A, BOOK_B);
+        jdbcTemplate.update("DELETE FROM users WHERE id = ?", USER_ID);
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    // De un lote alcanza con los parámetros de la primera fila
+    private static List<Object> parameters(QueryInfo query) {
+        if (query.getParametersList().isEmpty()) {
+            return List.of();
+        }
+        return query.getParametersList().get(0).stream()
+                .sorted(Comparator.comparingInt(operation -> (Integer) operation.getArgs()[0]))
+                .map(operation -> ParameterSetOperation.isSetNullParameterOperation(operation) ? null : operation.getArgs()[1])
+                .collect(Collectors.toList());
+    }
+
+    Stream<Arguments> repositoryQueries() {
+        return Stream.of(
+                // ReservationRepository
+                Arguments.of("findByIdGreaterThanOrderByIdAsc", "PRIMARY_KEY",
+                        (Runnable) () -> reservationRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(51))),
+                Arguments.of("findByUserIdAndIdGreaterThanOrderByIdAsc", "IDX_RESERVATIONS_USER_ID",
+                        (Runnable) () -> reservationRepository.findByUserIdAndIdGreaterThanOrderByIdAsc(USER_ID, 0L, Limit.of(51))),
+                Arguments.of("findByStatusAndIdGreaterThanOrderByIdAsc", "IDX_RESERVATIONS_STATUS_ID",
+                        (Runnable) () -> reservationRepository.findByStatusAndIdGreaterThanOrderByIdAsc(
+                                Reservation.ReservationStatus.ACTIVE, 0L, Limit.of(51))),
+                Arguments.of("findOverdueReservations", "IDX_RESERVATIONS_STATUS_RETURN_ID",
+                        (Runnable) () -> reservationRepository.findOverdueReservations(0L, Limit.of(51))),
+                Arguments.of("findOverdueIdRange", "IDX_RESERVATIONS_STATUS_EXPECTED",
+                        (Runnable) () -> reservationRepository.findOverdueIdRange(TODAY)),
+                // Cada bloque del barrido está acotado por ID: recorre solo las abiertas del rango
+                Arguments.of("markOverdue", "IDX_RESERVATIONS_STATUS_RETURN_ID",
+                        (Runnable) () -> reservationRepository.markOverdue(TODAY, new BigDecimal("0.15"), 0L, 1000L)),
+                Arguments.of("deleteByUserIdSummarizing", "FK_RESERVATIONS_USER",
+                        (Runnable) () -> reservationRepository.deleteByUserIdSummarizing(USER_ID)),
+                Arguments.of("findWithUserAndBookById", "PRIMARY_KEY",
+                        (Runnable) () -> reservationRepository.findWithUserAndBookById(1L)),
+                Arguments.of("findForReturnById", "PRIMARY_KEY",
+                        (Runnable) () -> reservationRepository.findForReturnById(1L)),
+                Arguments.of("findForReturnByIdIn", "PRIMARY_KEY",
+                        (Runnable) () -> reservationRepository.findForReturnByIdIn(List.of(1L, 2L, 3L))),
+                // BookRepository
+                Arguments.of("findByExternalId", "PRIMARY_KEY",
+                        (Runnable) () -> bookRepository.findByExternalId(BOOK_A)),
+                Arguments.of("existsByExternalId", "PRIMARY_KEY",
+                        (Runnable) () -> bookRepository.existsByExternalId(BOOK_A)),
+                Arguments.of("findContentHashesByExternalIdIn", "PRIMARY_KEY",
+                        (Runnable) () -> bookRepository.findContentHashesByExternalIdIn(List.of(BOOK_A, BOOK_B))),
+                Arguments.of("findAllWithAuthorsByExternalIdIn", "IDX_BOOK_AUTHORS_BOOK",
+                        (Runnable) () -> bookRepository.findAllWithAuthorsByExternalIdIn(List.of(BOOK_A, BOOK_B))),
+                Arguments.of("decrementAvailableQuantityBy", "PRIMARY_KEY",
+                        (Runnable) () -> bookRepository.decrementAvailableQuantityBy(BOOK_A, 2)),
+                Arguments.of("incrementAvailableQuantityBy", "PRIMARY_KEY",
+                        (Runnable) () -> bookRepository.incrementAvailableQuantityBy(BOOK_A, 2)),
+                Arguments.of("findAvailableQuantityByExternalId", "PRIMARY_KEY",
+                        (Runnable) () -> bookRepository.findAvailableQuantityByExternalId(BOOK_A)),
+                // Carga en grupos de la colección de autores de varios libros
+                Arguments.of("Book.authors", "IDX_BOOK_AUTHORS_BOOK",
+                        (Runnable) () -> bookRepository.findAllById(List.of(BOOK_A, BOOK_B))
+                                .forEach(book -> book.getAuthors().size())),
+                // UserRepository
+                Arguments.of("findByEmail", "UK_USERS_EMAIL",
+                        (Runnable) () -> userRepository.findByEmail("juan.perez@example.com")),
+                Arguments.of("existsByEmail", "UK_USERS_EMAIL",
+                        (Runnable) () -> userRepository.existsByEmail("juan.perez@example.com")),
+                Arguments.of("findAllById", "PRIMARY_KEY",
+                        (Runnable) () -> userRepository.findAllById(List.of(USER_ID, 1L, 2L))),
+                // AuthorRepository
+                Arguments.of("findByNameIn", "UK_AUTHORS_NAME",
+                        (Runnable) () -> authorRepository.findByNameIn(List.of("Gabriel García Márquez", "Julio Cortázar"))),
+                // RevenueAnalyticsService
+                Arguments.of("updateBucket", "REVENUE_BUCKETS",
+                        (Runnable) () -> revenueAnalyticsService.recordReservations(List.of(reservation()))),
+                Arguments.of("revenueByDay", "IDX_REVENUE_BUCKETS_DIMENSION_DATE",
+                        (Runnable) () -> revenueAnalyticsService.getRevenue(TODAY, TODAY.plusDays(364), RevenueReportDTO.Granularity.DAY)),
+                Arguments.of("topBooks", "IDX_REVENUE_BUCKETS_DIMENSION_DATE",
+                        (Runnable) () -> revenueAnalyticsService.getTopBooks(YearMonth.of(2024, 1), YearMonth.of(2024, 12), 10)),
+                Arguments.of("topUsers", "IDX_REVENUE_BUCKETS_DIMENSION_DATE",
+                        (Runnable) () -> revenueAnalyticsService.getTopUsers(YearMonth.of(2024, 1), YearMonth.of(2024, 12), 10))
+        );
+    }
+
+    private static Reservation reservation() {
+        User user = new User();
+        user.setId(USER_ID);
+        Book book = new Book();
+        book.setExternalId(BOOK_A);
+        Reservation reservation = new Reservation();
+        reservation.setUser(user);
+        reservation.setBook(book);
+        reservation.setStartDate(TODAY);
+        reservation.setTotalFee(Money.of("10.00"));
+        return reservation;
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("repositoryQueries")
+    void testQueryUsesIndex(String query, String expectedIndex, Runnable execution) {
+        List<CapturedStatement> statements = capture(execution);
+
+        assertFalse(statements.isEmpty(), () -> query + " no ejecutó ninguna sentencia");
+        assertPlans(query, expectedIndex, statements);
+    }
+
+    // rebuild() lee los bloques en otros hilos y confirma su propia transacción: se verifica su sentencia
+    @Test
+    void testRevenueHistoryChunkUsesPrimaryKey() {
+        assertPlans("revenueHistoryChunk", "PRIMARY_KEY",
+                List.of(new CapturedStatement(RevenueAnalyticsService.SELECT_HISTORY, List.of(0L, 10000L))));
+    }
+
+    private List<CapturedStatement> capture(Runnable execution) {
+        List<CapturedStatement> statements = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            CAPTURED.set(statements);
+            try {
+                execution.run();
+            } finally {
+                CAPTURED.remove();
+            }
+            status.setRollbackOnly();
+        });
+        return statements;
+    }
+
+    private void assertPlans(String query, String expectedIndex, List<CapturedStatement> statements) {
+        List<String> plans = new ArrayList<>();
+        for (CapturedStatement statement : statements) {
+            String plan = jdbcTemplate.queryForObject("EXPLAIN " + explainable(statement.sql()), String.class,
+                    statement.parameters().toArray());
+            assertFalse(plan.contains("tableScan"), () -> query + " recorre la tabla completa:\n" + plan);
+            plans.add(plan);
+        }
+        assertTrue(plans.stream().anyMatch(plan -> plan.contains(expectedIndex)),
+                () -> query + " no usa " + expectedIndex + ":\n" + String.join("\n", plans));
+    }
+
+    // EXPLAIN no muestra el plan dentro de OLD TABLE: se verifica el DELETE que envuelve
+    private static String explainable(String sql) {
+        Matcher oldTable = OLD_TABLE.matcher(sql);
+        return oldTable.find() ? oldTable.group(1) : sql;
+    }
+}
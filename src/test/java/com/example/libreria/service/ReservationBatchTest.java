@@ -0,0 +1,187 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ReservationBatchItemDTO;
+import com.example.libreria.dto.ReservationBatchResponseDTO;
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReturnBatchItemRequestDTO;
+import com.example.libreria.dto.ReturnBatchResponseDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Money;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ReservationBatchTest {
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Book book(long externalId, int copies) {
+        Book book = new Book();
+        book.setExternalId(externalId);
+        book.setTitle("Libro de lote " + externalId);
+        book.setPrice(Money.of("12.50"));
+        book.setStockQuantity(copies);
+        book.setAvailableQuantity(copies);
+        return book;
+    }
+
+    private List<User> users(String prefix, int count) {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            User user = new User();
+            user.setName("Alumno " + i);
+            user.setEmail(prefix + "-" + i + "@example.com");
+            users.add(user);
+        }
+        return userRepository.saveAll(users);
+    }
+
+    @Test
+    void testCreateReservations_ReportsEachItem() {
+        bookRepository.saveAll(List.of(book(660001L, 3), book(660002L, 10)));
+        List<User> users = users("batch", 5);
+
+        List<ReservationRequestDTO> requests = new ArrayList<>();
+        for (User user : users) {
+            requests.add(new ReservationRequestDTO(user.getId(), 660001L, 7, LocalDate.now()));
+        }
+        requests.add(new ReservationRequestDTO(users.get(0).getId(), 660002L, 3, LocalDate.now()));
+        requests.add(new ReservationRequestDTO(-1L, 660002L, 3, LocalDate.now()));
+        requests.add(new ReservationRequestDTO(users.get(0).getId(), 669999L, 3, LocalDate.now()));
+
+        ReservationBatchResponseDTO result = reservationService.createReservations(requests);
+
+        assertEquals(8, result.getRequested());
+        assertEquals(4, result.getCreated());
+        assertEquals(4, result.getFailed());
+        List<ReservationBatchItemDTO> items = result.getResults();
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals(i, items.get(i).getIndex());
+        }
+        // Las tres copias quedan para las primeras reservas del pedido
+        assertTrue(items.get(0).isSuccess());
+        assertTrue(items.get(2).isSuccess());
+        assertEquals(Money.of("87.50"), items.get(2).getReservation().getTotalFee());
+        assertFalse(items.get(3).isSuccess());
+        assertTrue(items.get(4).getError().startsWith("No hay copias disponibles"));
+        assertTrue(items.get(5).isSuccess());
+        assertEquals("Usuario no encontrado con ID: -1", items.get(6).getError());
+        assertEquals("Libro no encontrado con ID externo: 669999", items.get(7).getError());
+        assertNull(items.get(7).getReservation());
+
+        assertEquals(0, bookService.getBookByExternalId(660001L).getAvailableQuantity());
+        assertEquals(9, bookService.getBookByExternalId(660002L).getAvailableQuantity());
+    }
+
+    @Test
+    void testCreateReservations_StatementCountDoesNotGrowWithItems() {
+        bookRepository.saveAll(List.of(book(661001L, 100), book(661002L, 100)));
+        List<User> users = users("batch-statements", 50);
+        List<ReservationRequestDTO> requests = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            requests.add(new ReservationRequestDTO(users.get(i % users.size()).getId(), 661001L + i % 2, 7, LocalDate.now()));
+        }
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        ReservationBatchResponseDTO result = reservationService.createReservations(requests);
+
+        assertEquals(200, result.getCreated());
+        assertEquals(200, statistics.getEntityInsertCount());
+        // Usuarios, libros, un descuento por libro, la secuencia cada 50 IDs y los INSERT en lotes de 50
+        assertTrue(statistics.getPrepareStatementCount() <= 15,
+                () -> "Sentencias preparadas: " + statistics.getPrepareStatementCount());
+        assertEquals(0, bookService.getBookByExternalId(661001L).getAvailableQuantity());
+        assertEquals(0, bookService.getBookByExternalId(661002L).getAvailableQuantity());
+    }
+
+    @Test
+    void testReturnBooks_ReportsEachItem() {
+        bookRepository.saveAll(List.of(book(662001L, 2), book(662002L, 1)));
+        List<User> users = users("batch-return", 2);
+        LocalDate start = LocalDate.now().minusDays(10);
+        List<Long> ids = reservationService.createReservations(List.of(
+                        new ReservationRequestDTO(users.get(0).getId(), 662001L, 7, start),
+                        new ReservationRequestDTO(users.get(1).getId(), 662001L, 7, start),
+                        new ReservationRequestDTO(users.get(0).getId(), 662002L, 7, start)))
+                .getResults().stream().map(item -> item.getReservation().getId()).toList();
+
+        ReturnBatchResponseDTO result = reservationService.returnBooks(List.of(
+                new ReturnBatchItemRequestDTO(ids.get(0), start.plusDays(7)),
+                new ReturnBatchItemRequestDTO(ids.get(1), start.plusDays(10)),
+                new ReturnBatchItemRequestDTO(ids.get(1), start.plusDays(10)),
+                new ReturnBatchItemRequestDTO(ids.get(2), start.plusDays(8)),
+                new ReturnBatchItemRequestDTO(-1L, start.plusDays(7))));
+
+        assertEquals(5, result.getRequested());
+        assertEquals(3, result.getReturned());
+        assertEquals(2, result.getFailed());
+        List<ReservationBatchItemDTO> items = result.getResults();
+        assertEquals(Reservation.ReservationStatus.RETURNED, items.get(0).getReservation().getStatus());
+        assertEquals(Money.ZERO, items.get(0).getReservation().getLateFee());
+        // 12.50 × 0.15 × 3 días = 5.625 -> 5.63
+        assertEquals(Reservation.ReservationStatus.OVERDUE, items.get(1).getReservation().getStatus());
+        assertEquals(Money.of("5.63"), items.get(1).getReservation().getLateFee());
+        assertEquals("La reserva ya fue devuelta", items.get(2).getError());
+        assertEquals(Money.of("1.88"), items.get(3).getReservation().getLateFee());
+        assertEquals("Reserva no encontrada con ID: -1", items.get(4).getError());
+
+        assertEquals(Reservation.ReservationStatus.OVERDUE, reservationService.getReservationById(ids.get(1)).getStatus());
+        assertEquals(2, bookService.getBookByExternalId(662001L).getAvailableQuantity());
+        assertEquals(1, bookService.getBookByExternalId(662002L).getAvailableQuantity());
+    }
+
+    @Test
+    void testReturnBooks_StatementCountDoesNotGrowWithItems() {
+        bookRepository.saveAll(List.of(book(663001L, 100), book(663002L, 100)));
+        List<User> users = users("batch-return-statements", 50);
+        List<ReservationRequestDTO> requests = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            requests.add(new ReservationRequestDTO(users.get(i % users.size()).getId(), 663001L + i % 2, 7, LocalDate.now()));
+        }
+        List<ReturnBatchItemRequestDTO> returns = reservationService.createReservations(requests).getResults().stream()
+                .map(item -> new ReturnBatchItemRequestDTO(item.getReservation().getId(), LocalDate.now().plusDays(9)))
+                .toList();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        ReturnBatchResponseDTO result = reservationService.returnBooks(returns);
+
+        assertEquals(200, result.getReturned());
+        assertEquals(200, statistics.getEntityUpdateCount());
+        // Una consulta de reservas, una reposición por libro y los UPDATE en lotes de 50
+        assertTrue(statistics.getPrepareStatementCount() <= 10,
+                () -> "Sentencias preparadas: " + statistics.getPrepareStatementCount());
+        assertEquals(100, bookService.getBookByExternalId(663001L).getAvailableQuantity());
+        assertEquals(100, bookService.getBookByExternalId(663002L).getAvailableQuantity());
+    }
+}
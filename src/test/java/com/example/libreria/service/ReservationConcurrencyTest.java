@@ -0,0 +1,280 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.BookResponseDTO;
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReturnBatchItemRequestDTO;
+import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Money;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ReservationConcurrencyTest {
+
+    private static final int COPIES = 10;
+    private static final int PARALLEL_REQUESTS = 300;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void testConcurrentReservations_NeverOversell() throws Exception {
+        Book book = new Book();
+        book.setExternalId(990001L);
+        book.setTitle("Rayuela");
+        book.setPrice(Money.of("18.50"));
+        book.setStockQuantity(COPIES);
+        book.setAvailableQuantity(COPIES);
+        bookRepository.save(book);
+
+        User user = new User();
+        user.setName("Julio Cortázar");
+        user.setEmail("concurrency@example.com");
+        user = userRepository.save(user);
+
+        ReservationRequestDTO request = new ReservationRequestDTO(user.getId(), book.getExternalId(), 7, LocalDate.now());
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        Queue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < PARALLEL_REQUESTS; i++) {
+                futures.add(executor.submit(() -> {
+                    try {
+                        start.await();
+                        reservationService.createReservation(request);
+                        succeeded.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        if (e.getMessage() != null && e.getMessage().startsWith("No hay")) {
+                            rejected.incrementAndGet();
+                        } else {
+                            unexpected.add(e);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(unexpected.isEmpty(), () -> "Errores inesperados: " + unexpected);
+        assertEquals(COPIES, succeeded.get());
+        assertEquals(PARALLEL_REQUESTS - COPIES, rejected.get());
+        assertEquals(0, bookService.getBookByExternalId(book.getExternalId()).getAvailableQuantity());
+    }
+
+    @Test
+    void testConcurrentReturns_CountOnce() throws Exception {
+        Book book = new Book();
+        book.setExternalId(990002L);
+        book.setTitle("Bestiario");
+        book.setPrice(Money.of("12.00"));
+        book.setStockQuantity(1);
+        book.setAvailableQuantity(1);
+        bookRepository.save(book);
+
+        User user = new User();
+        user.setName("Lectora apurada");
+        user.setEmail("double-return@example.com");
+        user = userRepository.save(user);
+
+        LocalDate startDate = LocalDate.now();
+        Long reservationId = reservationService.createReservation(
+                new ReservationRequestDTO(user.getId(), book.getExternalId(), 7, startDate)).getId();
+        LocalDate returnDate = startDate.plusDays(7);
+
+        // Devoluciones simples y en lote de la misma reserva, todas a la vez
+        AtomicInteger returned = new AtomicInteger();
+        Queue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                boolean batch = i % 2 == 0;
+                futures.add(executor.submit(() -> {
+                    try {
+                        start.await();
+                        if (batch) {
+                            returned.addAndGet(reservationService.returnBooks(
+                                    List.of(new ReturnBatchItemRequestDTO(reservationId, returnDate))).getReturned());
+                        } else {
+                            reservationService.returnBook(reservationId, new ReturnBookRequestDTO(returnDate));
+                            returned.incrementAndGet();
+                        }
+                    } catch (RuntimeException e) {
+                        if (!"La reserva ya fue devuelta".equals(e.getMessage())) {
+                            unexpected.add(e);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(unexpected.isEmpty(), () -> "Errores inesperados: " + unexpected);
+        assertEquals(1, returned.get());
+        assertEquals(1, bookService.getBookByExternalId(book.getExternalId()).getAvailableQuantity());
+    }
+
+    @Test
+    void testConcurrentBatches_InOppositeBookOrder() throws Exception {
+        List<Long> bookIds = List.of(990003L, 990004L);
+        for (Long bookId : bookIds) {
+            Book book = new Book();
+            book.setExternalId(bookId);
+            book.setTitle("Libro " + bookId);
+            book.setPrice(Money.of("10.00"));
+            book.setStockQuantity(1000);
+            book.setAvailableQuantity(1000);
+            bookRepository.save(book);
+        }
+        User user = new User();
+        user.setName("Lector en lote");
+        user.setEmail("batch-order@example.com");
+        Long userId = userRepository.save(user).getId();
+
+        // La mitad de los lotes nombra los libros al revés
+        Queue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                List<Long> order = i % 2 == 0 ? bookIds : List.of(bookIds.get(1), bookIds.get(0));
+                futures.add(executor.submit(() -> {
+                    try {
+                        start.await();
+                        reservationService.createReservations(order.stream()
+                                .map(bookId -> new ReservationRequestDTO(userId, bookId, 7, LocalDate.now()))
+                                .toList());
+                    } catch (RuntimeException e) {
+                        unexpected.add(e);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(unexpected.isEmpty(), () -> "Errores inesperados: " + unexpected);
+        for (Long bookId : bookIds) {
+            assertEquals(960, bookService.getBookByExternalId(bookId).getAvailableQuantity());
+        }
+    }
+
+    @Test
+    void testUpdateStock_DuringConcurrentReservations() throws Exception {
+        Book book = new Book();
+        book.setExternalId(990005L);
+        book.setTitle("Final del juego");
+        book.setPrice(Money.of("14.00"));
+        book.setStockQuantity(100);
+        book.setAvailableQuantity(100);
+        bookRepository.save(book);
+
+        User user = new User();
+        user.setName("Lector del inventario");
+        user.setEmail("stock-update@example.com");
+        user = userRepository.save(user);
+
+        // Reservas mezcladas con cambios de stock del mismo libro
+        ReservationRequestDTO request = new ReservationRequestDTO(user.getId(), book.getExternalId(), 7, LocalDate.now());
+        AtomicInteger succeeded = new AtomicInteger();
+        Queue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 240; i++) {
+                int stock = i % 3 == 0 ? 100 + i : -1;
+                futures.add(executor.submit(() -> {
+                    try {
+                        start.await();
+                        if (stock >= 0) {
+                            bookService.updateStock(book.getExternalId(), stock);
+                        } else {
+                            reservationService.createReservation(request);
+                            succeeded.incrementAndGet();
+                        }
+                    } catch (RuntimeException e) {
+                        if (e.getMessage() == null || !e.getMessage().startsWith("No hay")) {
+                            unexpected.add(e);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(unexpected.isEmpty(), () -> "Errores inesperados: " + unexpected);
+        BookResponseDTO result = bookService.updateStock(book.getExternalId(), 400);
+        assertEquals(400, result.getStockQuantity());
+        assertEquals(400 - succeeded.get(), result.getAvailableQuantity());
+        assertEquals(400 - succeeded.get(), bookService.getBookByExternalId(book.getExternalId()).getAvailableQuantity());
+
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> bookService.updateStock(book.getExternalId(), succeeded.get() - 1));
+        assertEquals("No se puede reducir el stock por debajo de los libros reservados: " + succeeded.get(),
+                exception.getMessage());
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ReservationPageDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Money;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.ReservationRepository;
+import com.example.libreria.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ReservationListingQueryCountTest {
+
+    private static final int RESERVATIONS = 1000;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private long firstCursor;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        if (userRepository.existsByEmail("listing-0@example.com")) {
+            return;
+        }
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            User user = new User();
+            user.setName("Lector " + i);
+            user.setEmail("listing-" + i + "@example.com");
+            users.add(user);
+        }
+        users = userRepository.saveAll(users);
+
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Book book = new Book();
+            book.setExternalId(880000L + i);
+            book.setTitle("Libro " + i);
+            book.setPrice(Money.of("10.00"));
+            book.setStockQuantity(100);
+            book.setAvailableQuantity(100);
+            books.add(book);
+        }
+        books = bookRepository.saveAll(books);
+
+        List<Reservation> reservations = new ArrayList<>();
+        for (int i = 0; i < RESERVATIONS; i++) {
+            Reservation reservation = new Reservation();
+            reservation.setUser(users.get(i % users.size()));
+            reservation.setBook(books.get(i % books.size()));
+            reservation.setRentalDays(7);
+            reservation.setStartDate(LocalDate.now());
+            reservation.setExpectedReturnDate(LocalDate.now().plusDays(7));
+            reservation.setDailyRate(Money.of("10.00"));
+            reservation.setTotalFee(Money.of("70.00"));
+            reservations.add(reservation);
+        }
+        reservations = reservationRepository.saveAll(reservations);
+        firstCursor = reservations.get(0).getId() - 1;
+    }
+
+    @Test
+    void testListingStatementCountDoesNotGrowWithRows() {
+        statistics.clear();
+
+        int rows = 0;
+        int pages = 0;
+        Long cursor = firstCursor;
+        do {
+            ReservationPageDTO page = reservationService.getAllReservations(cursor, ReservationService.MAX_PAGE_SIZE);
+            page.getContent().forEach(dto -> {
+                assertNotNull(dto.getUserName());
+                assertNotNull(dto.getBookTitle());
+            });
+            rows += page.getContent().size();
+            pages++;
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(RESERVATIONS, rows);
+        // Una sola sentencia por página: usuario y libro llegan en el mismo JOIN
+        assertEquals(pages, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityFetchCount());
+    }
+}
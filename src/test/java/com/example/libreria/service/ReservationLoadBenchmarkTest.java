@@ -0,0 +1,182 @@
+package com.example.libreria.service;
+
+import com.example.libreria.LibreriaApplication;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Money;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmark de carga del flujo crear reserva / devolver libro por HTTP, con hilos de
+ * plataforma y con el perfil "virtual". Cada modo levanta su propia aplicación y base.
+ * No corre con el resto de los tests:
+ *
+ *   mvn test -Dtest=ReservationLoadBenchmarkTest -Dbenchmark=true [-Dbenchmark.clients=400] [-Dbenchmark.iterations=20]
+ *
+ * El modo virtual requiere Java 21 o superior; en versiones anteriores se omite.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ReservationLoadBenchmarkTest {
+
+    private static final int CLIENTS = Integer.getInteger("benchmark.clients", 200);
+    private static final int ITERATIONS = Integer.getInteger("benchmark.iterations", 10);
+    private static final int BOOKS = 20;
+    private static final long FIRST_BOOK_ID = 770000L;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void compareThreadingModes() throws Exception {
+        List<String> results = new ArrayList<>();
+        results.add(run("platform"));
+        if (Runtime.version().feature() >= 21) {
+            results.add(run("virtual", "virtual"));
+        } else {
+            results.add(String.format("%-8s omitido: Java %d no tiene hilos virtuales", "virtual", Runtime.version().feature()));
+        }
+
+        System.out.printf("%n%d clientes x %d iteraciones (crear + devolver)%n", CLIENTS, ITERATIONS);
+        results.forEach(System.out::println);
+    }
+
+    private String run(String mode, String... profiles) throws Exception {
+        List<String> activeProfiles = new ArrayList<>(List.of("test"));
+        activeProfiles.addAll(Arrays.asList(profiles));
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(LibreriaApplication.class)
+                .profiles(activeProfiles.toArray(String[]::new))
+                // Como argumentos para que tengan prioridad sobre application-test.yaml
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:benchmark-" + mode,
+                        "--spring.jpa.show-sql=false",
+                        "--spring.jpa.properties.hibernate.generate_statistics=false",
+                        "--logging.level.com.example.libreria=WARN")) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            List<Long> userIds = seed(context);
+
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            String baseUrl = "http://localhost:" + port + "/api/reservations";
+            // Calentamiento: carga de clases y JIT fuera de la medición
+            load(client, baseUrl, userIds, Math.min(CLIENTS, 20), 2);
+            Result result = load(client, baseUrl, userIds, CLIENTS, ITERATIONS);
+
+            assertEquals(0, result.errors, () -> mode + ": " + result.errors + " pedidos fallidos");
+            return String.format("%-8s %8.0f req/s   p50 %6.1f ms   p99 %6.1f ms   errores %d",
+                    mode, result.throughput(), result.percentile(50), result.percentile(99), result.errors);
+        }
+    }
+
+    private List<Long> seed(ConfigurableApplicationContext context) {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < BOOKS; i++) {
+            Book book = new Book();
+            book.setExternalId(FIRST_BOOK_ID + i);
+            book.setTitle("Libro de carga " + i);
+            book.setPrice(Money.of("12.50"));
+            book.setStockQuantity(1_000_000);
+            book.setAvailableQuantity(1_000_000);
+            books.add(book);
+        }
+        context.getBean(BookRepository.class).saveAll(books);
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            User user = new User();
+            user.setName("Cliente " + i);
+            user.setEmail("benchmark-" + i + "@example.com");
+            users.add(user);
+        }
+        return context.getBean(UserRepository.class).saveAll(users).stream().map(User::getId).toList();
+    }
+
+    private Result load(HttpClient client, String baseUrl, List<Long> userIds, int clients, int iterations) throws Exception {
+        long[][] latencies = new long[clients][iterations * 2];
+        AtomicInteger errors = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                int clientIndex = c;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    long userId = userIds.get(clientIndex);
+                    for (int i = 0; i < iterations; i++) {
+                        long bookId = FIRST_BOOK_ID + (clientIndex + i) % BOOKS;
+                        String reservation = "{\"userId\": " + userId + ", \"bookExternalId\": " + bookId
+                                + ", \"rentalDays\": 7, \"startDate\": \"" + LocalDate.now() + "\"}";
+                        long begin = System.nanoTime();
+                        HttpResponse<String> created = post(client, baseUrl, reservation);
+                        latencies[clientIndex][i * 2] = System.nanoTime() - begin;
+                        if (created.statusCode() != 201) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                        long reservationId = objectMapper.readTree(created.body()).get("id").asLong();
+                        begin = System.nanoTime();
+                        HttpResponse<String> returned = post(client, baseUrl + "/" + reservationId + "/return",
+                                "{\"returnDate\": \"" + LocalDate.now().plusDays(7) + "\"}");
+                        latencies[clientIndex][i * 2 + 1] = System.nanoTime() - begin;
+                        if (returned.statusCode() != 200) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.MINUTES);
+            }
+            long elapsed = System.nanoTime() - begin;
+            return new Result(Arrays.stream(latencies).flatMapToLong(Arrays::stream).filter(l -> l > 0).sorted().toArray(),
+                    elapsed, errors.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private HttpResponse<String> post(HttpClient client, String url, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private record Result(long[] sortedLatencies, long elapsedNanos, int errors) {
+
+        double throughput() {
+            return sortedLatencies.length / (elapsedNanos / 1e9);
+        }
+
+        double percentile(int percentile) {
+            int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(index, 0)] / 1e6;
+        }
+    }
+}
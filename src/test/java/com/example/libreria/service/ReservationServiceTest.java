@@ -1,9 +1,11 @@
 package com.example.libreria.service;
 
+import com.example.libreria.dto.ReservationPageDTO;
 import com.example.libreria.dto.ReservationRequestDTO;
 import com.example.libreria.dto.ReservationResponseDTO;
 import com.example.libreria.dto.ReturnBookRequestDTO;
 import com.example.libreria.model.Book;
+import com.example.libreria.model.Money;
 import com.example.libreria.model.Reservation;
 import com.example.libreria.model.User;
 import com.example.libreria.repository.BookRepository;
@@ -14,6 +16,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -42,6 +45,12 @@ class ReservationServiceTest {
     @Mock
     private UserService userService;
     
+    @Mock
+    private RevenueAnalyticsService revenueAnalyticsService;
+    
+    @Mock
+    private LibraryMetrics libraryMetrics;
+    
     @InjectMocks
     private ReservationService reservationService;
     
@@ -59,7 +68,7 @@ class ReservationServiceTest {
         testBook = new Book();
         testBook.setExternalId(258027L);
         testBook.setTitle("The Lord of the Rings");
-        testBook.setPrice(new BigDecimal("15.99"));
+        testBook.setPrice(Money.of("15.99"));
         testBook.setStockQuantity(10);
         testBook.setAvailableQuantity(5);
         
@@ -70,8 +79,8 @@ class ReservationServiceTest {
         testReservation.setRentalDays(7);
         testReservation.setStartDate(LocalDate.now());
         testReservation.setExpectedReturnDate(LocalDate.now().plusDays(7));
-        testReservation.setDailyRate(new BigDecimal("15.99"));
-        testReservation.setTotalFee(new BigDecimal("111.93"));
+        testReservation.setDailyRate(Money.of("15.99"));
+        testReservation.setTotalFee(Money.of("111.93"));
         testReservation.setStatus(Reservation.ReservationStatus.ACTIVE);
         testReservation.setCreatedAt(LocalDateTime.now());
     }
@@ -86,7 +95,7 @@ class ReservationServiceTest {
         requestDTO.setStartDate(LocalDate.now());
         
         when(userService.getUserEntity(1L)).thenReturn(testUser);
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
+        when(bookRepository.findById(258027L)).thenReturn(Optional.of(testBook));
         when(reservationRepository.save(any(Reservation.class))).thenReturn(testReservation);
         doNothing().when(bookService).decreaseAvailableQuantity(258027L);
         
@@ -100,6 +109,7 @@ class ReservationServiceTest {
         assertEquals(7, result.getRentalDays());
         verify(bookService, times(1)).decreaseAvailableQuantity(258027L);
         verify(reservationRepository, times(1)).save(any(Reservation.class));
+        verify(libraryMetrics).reservationsCreated(1);
     }
     
     @Test
@@ -111,10 +121,11 @@ class ReservationServiceTest {
         requestDTO.setRentalDays(7);
         requestDTO.setStartDate(LocalDate.now());
         
-        testBook.setAvailableQuantity(0); // No hay libros disponibles
-        
         when(userService.getUserEntity(1L)).thenReturn(testUser);
-        when(bookRepository.findByExternalId(258027L)).thenReturn(Optional.of(testBook));
+        when(bookRepository.findById(258027L)).thenReturn(Optional.of(testBook));
+        // No hay libros disponibles: la actualización condicional no descuenta nada
+        doThrow(new RuntimeException("No hay libros disponibles para reservar"))
+                .when(bookService).decreaseAvailableQuantity(258027L);
         
         // When & Then
         RuntimeException exception = assertThrows(RuntimeException.class, () -> {
@@ -122,8 +133,32 @@ class ReservationServiceTest {
         });
         
         assertTrue(exception.getMessage().contains("No hay copias disponibles"));
-        verify(bookService, never()).decreaseAvailableQuantity(anyLong());
         verify(reservationRepository, never()).save(any(Reservation.class));
+        verify(libraryMetrics).reservationsRejectedForNoStock(1);
+        verify(libraryMetrics, never()).reservationsCreated(anyInt());
+    }
+    
+    @Test
+    void testCreateReservation_IgnoresCachedAvailableQuantity() {
+        ReservationRequestDTO requestDTO = new ReservationRequestDTO();
+        requestDTO.setUserId(1L);
+        requestDTO.setBookExternalId(258027L);
+        requestDTO.setRentalDays(7);
+        requestDTO.setStartDate(LocalDate.now());
+        
+        // La entidad cacheada dice que no hay copias, pero en la base se devolvió una
+        testBook.setAvailableQuantity(0);
+        
+        when(userService.getUserEntity(1L)).thenReturn(testUser);
+        when(bookRepository.findById(258027L)).thenReturn(Optional.of(testBook));
+        doNothing().when(bookService).decreaseAvailableQuantity(258027L);
+        when(reservationRepository.save(any(Reservation.class))).thenReturn(testReservation);
+        
+        ReservationResponseDTO result = reservationService.createReservation(requestDTO);
+        
+        assertNotNull(result);
+        verify(bookService).decreaseAvailableQuantity(258027L);
+        verify(libraryMetrics, never()).reservationsRejectedForNoStock(anyInt());
     }
     
     @Test
@@ -132,7 +167,7 @@ class ReservationServiceTest {
         ReturnBookRequestDTO returnRequest = new ReturnBookRequestDTO();
         returnRequest.setReturnDate(LocalDate.now().plusDays(5)); // Devuelto 2 días antes
         
-        when(reservationRepository.findById(1L)).thenReturn(Optional.of(testReservation));
+        when(reservationRepository.findForReturnById(1L)).thenReturn(Optional.of(testReservation));
         when(reservationRepository.save(any(Reservation.class))).thenReturn(testReservation);
         doNothing().when(bookService).increaseAvailableQuantity(258027L);
         
@@ -142,9 +177,10 @@ class ReservationServiceTest {
         // Then
         assertNotNull(result);
         assertEquals(Reservation.ReservationStatus.RETURNED, testReservation.getStatus());
-        assertEquals(BigDecimal.ZERO, testReservation.getLateFee());
+        assertEquals(Money.ZERO, testReservation.getLateFee());
         verify(bookService, times(1)).increaseAvailableQuantity(258027L);
         verify(reservationRepository, times(1)).save(any(Reservation.class));
+        verify(libraryMetrics).reservationsReturned(1);
     }
     
     @Test
@@ -153,7 +189,7 @@ class ReservationServiceTest {
         ReturnBookRequestDTO returnRequest = new ReturnBookRequestDTO();
         returnRequest.setReturnDate(LocalDate.now().plusDays(10)); // Devuelto 3 días tarde
         
-        when(reservationRepository.findById(1L)).thenReturn(Optional.of(testReservation));
+        when(reservationRepository.findForReturnById(1L)).thenReturn(Optional.of(testReservation));
         when(reservationRepository.save(any(Reservation.class))).thenReturn(testReservation);
         doNothing().when(bookService).increaseAvailableQuantity(258027L);
         
@@ -163,20 +199,20 @@ class ReservationServiceTest {
         // Then
         assertNotNull(result);
         assertEquals(Reservation.ReservationStatus.OVERDUE, testReservation.getStatus());
-        assertTrue(testReservation.getLateFee().compareTo(BigDecimal.ZERO) > 0);
+        assertTrue(testReservation.getLateFee().compareTo(Money.ZERO) > 0);
         // La multa debería ser: 15.99 * 0.15 * 3 = 7.20
         BigDecimal expectedLateFee = new BigDecimal("15.99")
                 .multiply(new BigDecimal("0.15"))
                 .multiply(new BigDecimal("3"))
                 .setScale(2, java.math.RoundingMode.HALF_UP);
-        assertEquals(expectedLateFee, testReservation.getLateFee());
+        assertEquals(expectedLateFee, testReservation.getLateFee().toBigDecimal());
         verify(bookService, times(1)).increaseAvailableQuantity(258027L);
         verify(reservationRepository, times(1)).save(any(Reservation.class));
     }
     
     @Test
     void testGetReservationById_Success() {
-        when(reservationRepository.findById(1L)).thenReturn(Optional.of(testReservation));
+        when(reservationRepository.findWithUserAndBookById(1L)).thenReturn(Optional.of(testReservation));
         
         ReservationResponseDTO result = reservationService.getReservationById(1L);
         
@@ -188,34 +224,68 @@ class ReservationServiceTest {
     void testGetAllReservations() {
         Reservation reservation2 = new Reservation();
         reservation2.setId(2L);
+        reservation2.setUser(testUser);
+        reservation2.setBook(testBook);
         
-        when(reservationRepository.findAll()).thenReturn(Arrays.asList(testReservation, reservation2));
+        when(reservationRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(51)))
+                .thenReturn(Arrays.asList(testReservation, reservation2));
         
-        List<ReservationResponseDTO> result = reservationService.getAllReservations();
+        ReservationPageDTO result = reservationService.getAllReservations(null, null);
         
         assertNotNull(result);
-        assertEquals(2, result.size());
+        assertEquals(2, result.getContent().size());
+        assertNull(result.getNextCursor());
+    }
+    
+    @Test
+    void testGetAllReservations_NextPage() {
+        Reservation reservation2 = new Reservation();
+        reservation2.setId(2L);
+        reservation2.setUser(testUser);
+        reservation2.setBook(testBook);
+        
+        // Se piden size + 1 filas: si llega la fila extra hay página siguiente
+        when(reservationRepository.findByIdGreaterThanOrderByIdAsc(0L, Limit.of(2)))
+                .thenReturn(Arrays.asList(testReservation, reservation2));
+        
+        ReservationPageDTO result = reservationService.getAllReservations(null, 1);
+        
+        assertEquals(1, result.getContent().size());
+        assertEquals(1L, result.getNextCursor());
+    }
+    
+    @Test
+    void testGetAllReservations_PageSizeIsCapped() {
+        when(reservationRepository.findByIdGreaterThanOrderByIdAsc(10L, Limit.of(ReservationService.MAX_PAGE_SIZE + 1)))
+                .thenReturn(List.of());
+        
+        ReservationPageDTO result = reservationService.getAllReservations(10L, 100_000);
+        
+        assertTrue(result.getContent().isEmpty());
+        assertNull(result.getNextCursor());
     }
     
     @Test
     void testGetReservationsByUserId() {
-        when(reservationRepository.findByUserId(1L)).thenReturn(Arrays.asList(testReservation));
+        when(reservationRepository.findByUserIdAndIdGreaterThanOrderByIdAsc(1L, 0L, Limit.of(51)))
+                .thenReturn(Arrays.asList(testReservation));
         
-        List<ReservationResponseDTO> result = reservationService.getReservationsByUserId(1L);
+        ReservationPageDTO result = reservationService.getReservationsByUserId(1L, null, null);
         
         assertNotNull(result);
-        assertEquals(1, result.size());
+        assertEquals(1, result.getContent().size());
     }
     
     @Test
     void testGetActiveReservations() {
-        when(reservationRepository.findByStatus(Reservation.ReservationStatus.ACTIVE))
+        when(reservationRepository.findByStatusAndIdGreaterThanOrderByIdAsc(
+                Reservation.ReservationStatus.ACTIVE, 0L, Limit.of(51)))
                 .thenReturn(Arrays.asList(testReservation));
         
-        List<ReservationResponseDTO> result = reservationService.getActiveReservations();
+        ReservationPageDTO result = reservationService.getActiveReservations(null, null);
         
         assertNotNull(result);
-        assertEquals(1, result.size());
+        assertEquals(1, result.getContent().size());
     }
 }
 
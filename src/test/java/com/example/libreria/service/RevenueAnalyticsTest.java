@@ -0,0 +1,142 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.AnalyticsRebuildReportDTO;
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReturnBatchItemRequestDTO;
+import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.dto.RevenueRankingDTO;
+import com.example.libreria.dto.RevenueReportDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Money;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Usa fechas de 1989 y 1990 para no mezclarse con las reservas de otros tests; todas se devuelven
+// para que el barrido de vencidas de OverdueSweepServiceTest no las cuente
+@SpringBootTest
+@ActiveProfiles("test")
+class RevenueAnalyticsTest {
+    
+    private static final LocalDate MARCH_1 = LocalDate.of(1990, 3, 1);
+    private static final LocalDate MARCH_20 = LocalDate.of(1990, 3, 20);
+    private static final LocalDate APRIL_2 = LocalDate.of(1990, 4, 2);
+    private static final String BUCKETS_OF_1989 = "SELECT * FROM revenue_buckets " +
+            "WHERE bucket_date BETWEEN DATE '1989-01-01' AND DATE '1989-12-31' ORDER BY dimension, dimension_id, bucket_date";
+    
+    @Autowired
+    private RevenueAnalyticsService revenueAnalyticsService;
+    
+    @Autowired
+    private ReservationService reservationService;
+    
+    @Autowired
+    private BookRepository bookRepository;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    private Book book(long externalId, String price) {
+        Book book = new Book();
+        book.setExternalId(externalId);
+        book.setTitle("Libro de estadísticas " + externalId);
+        book.setPrice(Money.of(price));
+        book.setStockQuantity(10);
+        book.setAvailableQuantity(10);
+        return book;
+    }
+    
+    private User user(String email) {
+        User user = new User();
+        user.setName("Lector " + email);
+        user.setEmail(email);
+        return userRepository.save(user);
+    }
+    
+    @Test
+    void testBucketsFollowReservationsAndReturns() {
+        bookRepository.saveAll(List.of(book(670001L, "10.00"), book(670002L, "20.00")));
+        User ana = user("ana-analytics@example.com");
+        User beto = user("beto-analytics@example.com");
+        
+        // 10.00 × 7 = 70.00 y 20.00 × 3 = 60.00 el 1/3; 20.00 × 5 = 100.00 el 20/3
+        Long first = reservationService.createReservation(new ReservationRequestDTO(ana.getId(), 670001L, 7, MARCH_1)).getId();
+        List<Long> batch = reservationService.createReservations(List.of(
+                        new ReservationRequestDTO(beto.getId(), 670002L, 3, MARCH_1),
+                        new ReservationRequestDTO(ana.getId(), 670002L, 5, MARCH_20)))
+                .getResults().stream().map(item -> item.getReservation().getId()).toList();
+        // A tiempo el 8/3 y el 25/3; con 29 días de demora el 2/4 (20.00 × 0.15 × 29 = 87.00)
+        reservationService.returnBook(first, new ReturnBookRequestDTO(MARCH_1.plusDays(7)));
+        reservationService.returnBooks(List.of(
+                new ReturnBatchItemRequestDTO(batch.get(0), APRIL_2),
+                new ReturnBatchItemRequestDTO(batch.get(1), MARCH_20.plusDays(5))));
+        
+        RevenueReportDTO monthly = revenueAnalyticsService.getRevenue(MARCH_1, APRIL_2.plusDays(10), RevenueReportDTO.Granularity.MONTH);
+        assertEquals(2, monthly.getPeriods().size());
+        assertEquals("1990-03", monthly.getPeriods().get(0).getPeriod());
+        assertEquals(3, monthly.getPeriods().get(0).getReservations());
+        assertEquals(2, monthly.getPeriods().get(0).getReturns());
+        assertEquals(Money.of("230.00"), monthly.getPeriods().get(0).getRentalRevenue());
+        assertEquals("1990-04", monthly.getPeriods().get(1).getPeriod());
+        assertEquals(Money.of("87.00"), monthly.getPeriods().get(1).getLateFeeRevenue());
+        assertEquals(Money.of("317.00"), monthly.getTotalRevenue());
+        
+        RevenueReportDTO daily = revenueAnalyticsService.getRevenue(MARCH_1, MARCH_1, RevenueReportDTO.Granularity.DAY);
+        // Las filas del día repartidas por usuario se informan como un solo período
+        assertEquals(1, daily.getPeriods().size());
+        assertEquals(2, daily.getReservations());
+        assertEquals(Money.of("130.00"), daily.getRentalRevenue());
+        
+        List<RevenueRankingDTO> books = revenueAnalyticsService.getTopBooks(YearMonth.of(1990, 3), YearMonth.of(1990, 4), 10);
+        assertEquals(2, books.size());
+        assertEquals(670002L, books.get(0).getId());
+        assertEquals("Libro de estadísticas 670002", books.get(0).getName());
+        assertEquals(Money.of("247.00"), books.get(0).getTotalRevenue());
+        assertEquals(670001L, books.get(1).getId());
+        
+        List<RevenueRankingDTO> users = revenueAnalyticsService.getTopUsers(YearMonth.of(1990, 3), YearMonth.of(1990, 3), 1);
+        assertEquals(1, users.size());
+        assertEquals(ana.getId(), users.get(0).getId());
+        assertEquals(Money.of("170.00"), users.get(0).getRentalRevenue());
+    }
+    
+    @Test
+    void testRebuild_MatchesIncrementalBuckets() {
+        bookRepository.save(book(671001L, "12.50"));
+        User user = user("rebuild-analytics@example.com");
+        Long id = reservationService.createReservation(new ReservationRequestDTO(user.getId(), 671001L, 4, MARCH_1.minusYears(1))).getId();
+        reservationService.returnBook(id, new ReturnBookRequestDTO(MARCH_1.minusYears(1).plusDays(6)));
+        List<Map<String, Object>> incremental = jdbcTemplate.queryForList(BUCKETS_OF_1989);
+        
+        AnalyticsRebuildReportDTO report = revenueAnalyticsService.rebuild();
+        
+        // Día de la reserva, día de la devolución, mes del libro y mes del usuario
+        assertEquals(4, incremental.size());
+        assertEquals(incremental, jdbcTemplate.queryForList(BUCKETS_OF_1989));
+        assertEquals(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM reservations", Long.class), report.getReservations());
+        assertEquals(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM revenue_buckets", Integer.class), report.getBuckets());
+    }
+    
+    @Test
+    void testGetRevenue_RejectsInvertedRange() {
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> revenueAnalyticsService.getRevenue(APRIL_2, MARCH_1, RevenueReportDTO.Granularity.DAY));
+        
+        assertEquals("La fecha inicial no puede ser posterior a la fecha final", exception.getMessage());
+    }
+}
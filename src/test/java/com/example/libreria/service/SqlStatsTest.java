@@ -0,0 +1,176 @@
+package com.example.libreria.service;
+
+import com.example.libreria.config.SqlStatsFilter;
+import com.example.libreria.dto.SqlRouteStatsDTO;
+import com.example.libreria.model.Author;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Money;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.AuthorRepository;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.ReservationRepository;
+import com.example.libreria.repository.UserRepository;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class SqlStatsTest {
+
+    private static final long FIRST_BOOK = 580000L;
+    private static final int BOOKS = 5;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    private Long userId;
+
+    @BeforeEach
+    void setUp() {
+        User existing = userRepository.findByEmail("sql-stats@example.com").orElse(null);
+        if (existing != null) {
+            userId = existing.getId();
+            return;
+        }
+        Author author = new Author();
+        author.setName("Autora contada");
+        author = authorRepository.save(author);
+        for (int i = 0; i < BOOKS; i++) {
+            Book book = new Book();
+            book.setExternalId(FIRST_BOOK + i);
+            book.setTitle("Libro contado " + i);
+            book.setPrice(Money.of("10.00"));
+            book.setStockQuantity(10);
+            book.setAvailableQuantity(10);
+            book.getAuthors().add(author);
+            bookRepository.save(book);
+        }
+        User user = new User();
+        user.setName("Lectora contada");
+        user.setEmail("sql-stats@example.com");
+        userId = userRepository.save(user).getId();
+    }
+
+    // Ejecuta el pedido y verifica que no supere el presupuesto de sentencias SQL
+    private MvcResult assertQueryBudget(MockHttpServletRequestBuilder request, int budget) throws Exception {
+        MvcResult result = mockMvc.perform(request).andReturn();
+        assertTrue(result.getResponse().getStatus() < 400, result.getResponse().getContentAsString());
+        String queries = result.getResponse().getHeader(SqlStatsFilter.QUERIES_HEADER);
+        assertNotNull(queries);
+        assertNotNull(result.getResponse().getHeader(SqlStatsFilter.JDBC_TIME_HEADER));
+        assertNotNull(result.getResponse().getHeader(SqlStatsFilter.ENTITIES_HEADER));
+        assertTrue(Integer.parseInt(queries) <= budget,
+                result.getRequest().getMethod() + " " + result.getRequest().getRequestURI() + " ejecutó " + queries + " sentencias, presupuesto " + budget);
+        return result;
+    }
+
+    private String reservation(long bookExternalId) {
+        return "{\"userId\":" + userId + ",\"bookExternalId\":" + bookExternalId
+                + ",\"rentalDays\":7,\"startDate\":\"1988-05-01\"}";
+    }
+
+    @Test
+    void testReservationRoutesStayWithinBudget() throws Exception {
+        // Usuario, libro, descuento de stock, alta de la reserva y acumulados de estadísticas
+        List<Long> ids = new ArrayList<>();
+        List<String> returns = new ArrayList<>();
+        for (int i = 0; i < BOOKS; i++) {
+            MvcResult created = assertQueryBudget(post("/api/reservations")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(reservation(FIRST_BOOK + i)), 10);
+            Number id = JsonPath.read(created.getResponse().getContentAsString(), "$.id");
+            ids.add(id.longValue());
+            returns.add("{\"reservationId\":" + id + ",\"returnDate\":\"1988-05-08\"}");
+        }
+
+        // El listado trae usuario y libro en el mismo JOIN: no crece con las filas
+        MvcResult page = assertQueryBudget(get("/api/reservations/user/{userId}", userId), 1);
+        // Cinco reservas, la usuaria y los cinco libros, todos de la misma sentencia
+        assertEquals("11", page.getResponse().getHeader(SqlStatsFilter.ENTITIES_HEADER));
+        assertQueryBudget(get("/api/reservations/active").param("size", "200"), 1);
+        assertQueryBudget(get("/api/reservations/overdue"), 1);
+
+        // Las devoluciones en lote no ejecutan sentencias por reserva
+        assertQueryBudget(post("/api/reservations/batch/return")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"returns\":[" + String.join(",", returns) + "]}"), 10);
+
+        // Este contexto reserva IDs de otro bloque de la secuencia: sin borrarlas, las reservas
+        // aparecerían en los listados que verifican otros tests
+        reservationRepository.deleteAllByIdInBatch(ids);
+    }
+
+    @Test
+    void testBookRoutesStayWithinBudget() throws Exception {
+        // Libro y autores: el libro y una sola carga de sus autores
+        assertQueryBudget(get("/api/books/{externalId}", FIRST_BOOK), 2);
+        assertQueryBudget(get("/api/books/search").param("q", "contado"), 2);
+        assertQueryBudget(get("/api/books"), 3);
+    }
+
+    @Test
+    void testAggregatesStatementsPerRoute() throws Exception {
+        mockMvc.perform(get("/api/books/{externalId}", FIRST_BOOK)).andExpect(status().isOk());
+        mockMvc.perform(get("/api/books/{externalId}", FIRST_BOOK + 1)).andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/admin/sql-stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].route", hasItem("GET /api/books/{externalId}")));
+    }
+
+    @Test
+    void testCountsRequestsOverBudget() {
+        SqlStatsService service = new SqlStatsService(2);
+        RequestSqlStats stats = RequestSqlStats.start();
+        for (int i = 0; i < 3; i++) {
+            stats.beforeStatement();
+            stats.afterStatement();
+        }
+        stats.entityLoaded();
+        RequestSqlStats.clear();
+
+        service.record("GET /api/books/{externalId}", stats);
+        service.record("GET /api/books/{externalId}", new RequestSqlStats());
+
+        List<SqlRouteStatsDTO> routes = service.getRouteStats();
+        assertEquals(1, routes.size());
+        assertEquals(2, routes.get(0).getRequests());
+        assertEquals(3, routes.get(0).getStatements());
+        assertEquals(3, routes.get(0).getMaxStatements());
+        assertEquals(1.5, routes.get(0).getAvgStatements());
+        assertEquals(1, routes.get(0).getEntitiesLoaded());
+        assertEquals(1, routes.get(0).getOverBudget());
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.BookSyncReportDTO;
+import com.example.libreria.dto.SyncJobDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SyncJobServiceTest {
+    
+    @Mock
+    private BookService bookService;
+    
+    // Retiene las tareas para decidir en cada test cuándo se ejecutan
+    private final Deque<Runnable> submitted = new ArrayDeque<>();
+    private final Executor executor = submitted::add;
+    
+    private SyncJobService syncJobService;
+    
+    @BeforeEach
+    void setUp() {
+        syncJobService = new SyncJobService(bookService, executor);
+    }
+    
+    private void runNext() {
+        submitted.removeFirst().run();
+    }
+    
+    @Test
+    void testSubmitSync_RunsInBackground() {
+        when(bookService.syncBooksFromExternalApi(any())).thenReturn(new BookSyncReportDTO(3, 1, 2, 40));
+        
+        SyncJobDTO submittedJob = syncJobService.submitSync();
+        
+        assertEquals(SyncJobDTO.Status.PENDING, submittedJob.getStatus());
+        verify(bookService, never()).syncBooksFromExternalApi(any());
+        
+        runNext();
+        SyncJobDTO job = syncJobService.getJob(submittedJob.getJobId());
+        
+        assertEquals(SyncJobDTO.Status.COMPLETED, job.getStatus());
+        assertEquals(6, job.getProcessed());
+        assertEquals(3, job.getInserted());
+        assertEquals(1, job.getUpdated());
+        assertEquals(2, job.getUnchanged());
+        assertEquals(40, job.getElapsedMillis());
+        assertNotNull(job.getFinishedAt());
+        assertNull(job.getError());
+    }
+    
+    @Test
+    void testSubmitSync_ReportsProgressWhileRunning() {
+        SyncJobDTO[] midway = new SyncJobDTO[1];
+        when(bookService.syncBooksFromExternalApi(any())).thenAnswer(invocation -> {
+            Consumer<BookSyncReportDTO> onChunkCommitted = invocation.getArgument(0);
+            onChunkCommitted.accept(new BookSyncReportDTO(500, 0, 0, 0));
+            midway[0] = syncJobService.getJob(syncJobService.submitSync().getJobId());
+            return new BookSyncReportDTO(700, 0, 0, 90);
+        });
+        
+        syncJobService.submitSync();
+        runNext();
+        
+        assertEquals(SyncJobDTO.Status.RUNNING, midway[0].getStatus());
+        assertEquals(500, midway[0].getProcessed());
+        assertNotNull(midway[0].getStartedAt());
+    }
+    
+    @Test
+    void testSubmitSync_CoalescesConcurrentTriggers() {
+        SyncJobDTO first = syncJobService.submitSync();
+        SyncJobDTO second = syncJobService.submitSync();
+        
+        assertEquals(first.getJobId(), second.getJobId());
+        assertEquals(1, submitted.size());
+    }
+    
+    @Test
+    void testSubmitSync_StartsNewJobAfterPreviousFinished() {
+        when(bookService.syncBooksFromExternalApi(any())).thenReturn(new BookSyncReportDTO());
+        SyncJobDTO first = syncJobService.submitSync();
+        runNext();
+        
+        SyncJobDTO second = syncJobService.submitSync();
+        
+        assertNotEquals(first.getJobId(), second.getJobId());
+        assertEquals(SyncJobDTO.Status.COMPLETED, syncJobService.getJob(first.getJobId()).getStatus());
+    }
+    
+    @Test
+    void testSubmitSync_Failure() {
+        when(bookService.syncBooksFromExternalApi(any()))
+                .thenThrow(new RuntimeException("Error al obtener libros de la API externa: 502"));
+        SyncJobDTO submittedJob = syncJobService.submitSync();
+        
+        runNext();
+        SyncJobDTO job = syncJobService.getJob(submittedJob.getJobId());
+        
+        assertEquals(SyncJobDTO.Status.FAILED, job.getStatus());
+        assertEquals("Error al obtener libros de la API externa: 502", job.getError());
+        // Un trabajo fallido no bloquea la siguiente sincronización
+        assertNotEquals(job.getJobId(), syncJobService.submitSync().getJobId());
+    }
+    
+    @Test
+    void testSubmitSync_RetainsOnlyRecentJobs() {
+        when(bookService.syncBooksFromExternalApi(any())).thenReturn(new BookSyncReportDTO());
+        String oldest = syncJobService.submitSync().getJobId();
+        runNext();
+        for (int i = 0; i < SyncJobService.MAX_RETAINED_JOBS; i++) {
+            syncJobService.submitSync();
+            runNext();
+        }
+        
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> syncJobService.getJob(oldest));
+        
+        assertEquals("Trabajo de sincronización no encontrado: " + oldest, exception.getMessage());
+    }
+}
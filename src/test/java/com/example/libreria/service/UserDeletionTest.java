@@ -0,0 +1,199 @@
+package com.example.libreria.service;
+
+import com.example.libreria.dto.ReservationRequestDTO;
+import com.example.libreria.dto.ReturnBatchItemRequestDTO;
+import com.example.libreria.dto.ReturnBookRequestDTO;
+import com.example.libreria.model.Book;
+import com.example.libreria.model.Money;
+import com.example.libreria.model.Reservation;
+import com.example.libreria.model.User;
+import com.example.libreria.repository.BookRepository;
+import com.example.libreria.repository.ReservationRepository;
+import com.example.libreria.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class UserDeletionTest {
+
+    private static final int HISTORY = 2000;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private RevenueAnalyticsService revenueAnalyticsService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Book book(long externalId, int stock, int available) {
+        Book book = new Book();
+        book.setExternalId(externalId);
+        book.setTitle("Libro " + externalId);
+        book.setPrice(Money.of("10.00"));
+        book.setStockQuantity(stock);
+        book.setAvailableQuantity(available);
+        return bookRepository.save(book);
+    }
+
+    private Reservation reservation(User user, Book book, Reservation.ReservationStatus status) {
+        Reservation reservation = new Reservation();
+        reservation.setUser(user);
+        reservation.setBook(book);
+        reservation.setRentalDays(7);
+        reservation.setStartDate(LocalDate.of(2025, 1, 1));
+        reservation.setExpectedReturnDate(LocalDate.of(2025, 1, 8));
+        reservation.setDailyRate(Money.of("10.00"));
+        reservation.setTotalFee(Money.of("70.00"));
+        reservation.setStatus(status);
+        if (status == Reservation.ReservationStatus.RETURNED) {
+            reservation.setActualReturnDate(LocalDate.of(2025, 1, 8));
+            reservation.setLateFee(Money.ZERO);
+        }
+        return reservation;
+    }
+
+    @Test
+    void testDeleteUserWithLongHistoryRestoresOpenCopies() {
+        // Tres copias prestadas del primer libro (una vencida) y una del segundo
+        Book novel = book(560000L, 10, 7);
+        Book essay = book(560001L, 5, 4);
+        User user = new User();
+        user.setName("Socio antiguo");
+        user.setEmail("deletion-history@example.com");
+        user = userRepository.save(user);
+
+        List<Reservation> history = new ArrayList<>();
+        for (int i = 0; i < HISTORY; i++) {
+            history.add(reservation(user, i % 2 == 0 ? novel : essay, Reservation.ReservationStatus.RETURNED));
+        }
+        history.add(reservation(user, novel, Reservation.ReservationStatus.ACTIVE));
+        history.add(reservation(user, novel, Reservation.ReservationStatus.ACTIVE));
+        history.add(reservation(user, novel, Reservation.ReservationStatus.OVERDUE));
+        history.add(reservation(user, essay, Reservation.ReservationStatus.ACTIVE));
+        reservationRepository.saveAll(history);
+        // Las reservas se guardaron sin pasar por el servicio: los acumulados las incluyen al reconstruirlos
+        revenueAnalyticsService.rebuild();
+
+        // Cuenta todas las sentencias JDBC, también las de stock que no pasan por Hibernate
+        RequestSqlStats stats = RequestSqlStats.start();
+        try {
+            userService.deleteUser(user.getId());
+        } finally {
+            RequestSqlStats.clear();
+        }
+
+        // Existencia, borrado de reservas, una actualización por libro, un lote que descuenta
+        // los acumulados, otro que borra los que quedan vacíos y borrado del usuario
+        assertEquals(7, stats.getStatements());
+        assertEquals(0, stats.getEntitiesLoaded());
+        assertFalse(userRepository.existsById(user.getId()));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM reservations WHERE user_id = ?", Integer.class, user.getId()));
+        assertEquals(10, bookRepository.findAvailableQuantityByExternalId(560000L).orElseThrow());
+        assertEquals(5, bookRepository.findAvailableQuantityByExternalId(560001L).orElseThrow());
+        // El borrado deja los mismos acumulados que una reconstrucción a partir de las reservas que quedan
+        List<Map<String, Object>> afterDeletion = buckets();
+        revenueAnalyticsService.rebuild();
+        assertEquals(buckets(), afterDeletion);
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM revenue_buckets WHERE dimension = 'USER' AND dimension_id = ?", Integer.class, user.getId()));
+    }
+
+    @Test
+    void testDeleteUserWhileReturningBooks() throws Exception {
+        book(560002L, 20, 20);
+        book(560003L, 20, 20);
+        User user = new User();
+        user.setName("Socio que se va");
+        user.setEmail("deletion-returns@example.com");
+        Long userId = userRepository.save(user).getId();
+        LocalDate start = LocalDate.of(2025, 2, 1);
+        List<Long> reservationIds = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            reservationIds.add(reservationService.createReservation(
+                    new ReservationRequestDTO(userId, i % 2 == 0 ? 560002L : 560003L, 7, start)).getId());
+        }
+
+        // Devoluciones sueltas y en lote de los dos libros mientras se borra el usuario
+        Queue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+        CountDownLatch go = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            futures.add(executor.submit(() -> {
+                go.await();
+                userService.deleteUser(userId);
+                return null;
+            }));
+            for (int i = 0; i < 10; i++) {
+                Long reservationId = reservationIds.get(19 - i);
+                futures.add(executor.submit(() -> {
+                    go.await();
+                    try {
+                        reservationService.returnBook(reservationId, new ReturnBookRequestDTO(start.plusDays(7)));
+                    } catch (RuntimeException e) {
+                        if (e.getMessage() == null || !e.getMessage().startsWith("Reserva no encontrada")) {
+                            unexpected.add(e);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            futures.add(executor.submit(() -> {
+                go.await();
+                reservationService.returnBooks(reservationIds.subList(0, 10).stream()
+                        .map(id -> new ReturnBatchItemRequestDTO(id, start.plusDays(7)))
+                        .toList());
+                return null;
+            }));
+            go.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(unexpected.isEmpty(), () -> "Errores inesperados: " + unexpected);
+        assertFalse(userRepository.existsById(userId));
+        // Cada copia vuelve una sola vez: por la devolución o por el borrado
+        assertEquals(20, bookRepository.findAvailableQuantityByExternalId(560002L).orElseThrow());
+        assertEquals(20, bookRepository.findAvailableQuantityByExternalId(560003L).orElseThrow());
+    }
+
+    private List<Map<String, Object>> buckets() {
+        return jdbcTemplate.queryForList("SELECT * FROM revenue_buckets ORDER BY dimension, dimension_id, bucket_date");
+    }
+}
@@ -3,14 +3,19 @@ package com.example.libreria.service;
 import com.example.libreria.dto.UserRequestDTO;
 import com.example.libreria.dto.UserResponseDTO;
 import com.example.libreria.model.User;
+import com.example.libreria.repository.ReservationRepository;
 import com.example.libreria.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
@@ -27,6 +32,18 @@ class UserServiceTest {
     @Mock
     private UserRepository userRepository;
     
+    @Mock
+    private EmailFilterService emailFilterService;
+    
+    @Mock
+    private ReservationRepository reservationRepository;
+    
+    @Mock
+    private BookService bookService;
+    
+    @Mock
+    private RevenueAnalyticsService revenueAnalyticsService;
+    
     @InjectMocks
     private UserService userService;
     
@@ -50,6 +67,7 @@ class UserServiceTest {
     
     @Test
     void testCreateUser_Success() {
+        when(emailFilterService.mightExist(anyString())).thenReturn(true);
         when(userRepository.existsByEmail(anyString())).thenReturn(false);
         when(userRepository.save(any(User.class))).thenReturn(testUser);
         
@@ -60,10 +78,12 @@ class UserServiceTest {
         assertEquals(testUser.getName(), result.getName());
         assertEquals(testUser.getEmail(), result.getEmail());
         verify(userRepository, times(1)).save(any(User.class));
+        verify(emailFilterService).add("juan@example.com");
     }
     
     @Test
     void testCreateUser_EmailAlreadyExists() {
+        when(emailFilterService.mightExist(anyString())).thenReturn(true);
         when(userRepository.existsByEmail(anyString())).thenReturn(true);
         
         assertThrows(RuntimeException.class, () -> {
@@ -73,6 +93,30 @@ class UserServiceTest {
         verify(userRepository, never()).save(any(User.class));
     }
     
+    @Test
+    void testCreateUser_EmailNotInFilterSkipsQuery() {
+        when(emailFilterService.mightExist("juan@example.com")).thenReturn(false);
+        when(userRepository.save(any(User.class))).thenReturn(testUser);
+        
+        userService.createUser(userRequestDTO);
+        
+        verify(userRepository, never()).existsByEmail(anyString());
+        verify(userRepository, times(1)).save(any(User.class));
+    }
+    
+    @Test
+    void testCreateUser_DuplicateRejectedByDatabase() {
+        when(emailFilterService.mightExist(anyString())).thenReturn(false);
+        when(userRepository.save(any(User.class))).thenThrow(new DataIntegrityViolationException("uk_users_email"));
+        
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> {
+            userService.createUser(userRequestDTO);
+        });
+        
+        assertEquals("Ya existe un usuario con el email: juan@example.com", exception.getMessage());
+        verify(emailFilterService, never()).add(anyString());
+    }
+    
     @Test
     void testGetUserById_Success() {
         when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
@@ -111,13 +155,28 @@ class UserServiceTest {
     @Test
     void testUpdateUser_Success() {
         when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
-        when(userRepository.existsByEmail(anyString())).thenReturn(false);
         when(userRepository.save(any(User.class))).thenReturn(testUser);
         
         UserResponseDTO result = userService.updateUser(1L, userRequestDTO);
         
         assertNotNull(result);
         verify(userRepository, times(1)).save(any(User.class));
+        // El email no cambió: no hace falta verificarlo
+        verify(userRepository, never()).existsByEmail(anyString());
+    }
+    
+    @Test
+    void testUpdateUser_NewEmailAlreadyExists() {
+        userRequestDTO.setEmail("maria@example.com");
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
+        when(emailFilterService.mightExist("maria@example.com")).thenReturn(true);
+        when(userRepository.existsByEmail("maria@example.com")).thenReturn(true);
+        
+        assertThrows(RuntimeException.class, () -> {
+            userService.updateUser(1L, userRequestDTO);
+        });
+        
+        verify(userRepository, never()).save(any(User.class));
     }
     
     @Test
@@ -126,7 +185,32 @@ class UserServiceTest {
         
         userService.deleteUser(1L);
         
-        verify(userRepository, times(1)).deleteById(1L);
+        verify(reservationRepository, times(1)).deleteByUserIdSummarizing(1L);
+        verify(userRepository, times(1)).deleteAllByIdInBatch(List.of(1L));
+        verify(userRepository, never()).deleteById(anyLong());
+        verifyNoInteractions(bookService);
+        verify(emailFilterService).markStale();
+    }
+    
+    @Test
+    void testDeleteUser_RestoresOpenCopiesPerBook() {
+        LocalDate start = LocalDate.of(2025, 1, 1);
+        List<ReservationRepository.DeletedHistoryView> history = List.of(
+                deleted(258027L, start, null, 2), deleted(258027L, start.plusDays(1), null, 1),
+                deleted(258027L, start, start.plusDays(7), 5), deleted(140081L, start, null, 1));
+        when(userRepository.existsById(1L)).thenReturn(true);
+        when(reservationRepository.deleteByUserIdSummarizing(1L)).thenReturn(history);
+        when(bookService.releaseCopies(anyLong(), anyInt())).thenReturn(true);
+        
+        userService.deleteUser(1L);
+        
+        // Una actualización por libro, en orden de ID y con todas sus copias juntas
+        InOrder inOrder = inOrder(bookService);
+        inOrder.verify(bookService).releaseCopies(140081L, 1);
+        inOrder.verify(bookService).releaseCopies(258027L, 3);
+        verifyNoMoreInteractions(bookService);
+        verify(revenueAnalyticsService).removeUserHistory(1L, history);
+        verify(userRepository).deleteAllByIdInBatch(List.of(1L));
     }
     
     @Test
@@ -137,7 +221,43 @@ class UserServiceTest {
             userService.deleteUser(1L);
         });
         
-        verify(userRepository, never()).deleteById(anyLong());
+        verify(userRepository, never()).deleteAllByIdInBatch(any());
+        verifyNoInteractions(reservationRepository, bookService, revenueAnalyticsService);
+    }
+    
+    private ReservationRepository.DeletedHistoryView deleted(Long bookExternalId, LocalDate startDate,
+                                                             LocalDate actualReturnDate, long reservations) {
+        return new ReservationRepository.DeletedHistoryView() {
+            @Override
+            public Long getBookExternalId() {
+                return bookExternalId;
+            }
+            
+            @Override
+            public LocalDate getStartDate() {
+                return startDate;
+            }
+            
+            @Override
+            public LocalDate getActualReturnDate() {
+                return actualReturnDate;
+            }
+            
+            @Override
+            public long getReservations() {
+                return reservations;
+            }
+            
+            @Override
+            public BigDecimal getTotalFee() {
+                return new BigDecimal("70.00").multiply(BigDecimal.valueOf(reservations));
+            }
+            
+            @Override
+            public BigDecimal getLateFee() {
+                return actualReturnDate != null ? BigDecimal.ZERO : null;
+            }
+        };
     }
 }
 